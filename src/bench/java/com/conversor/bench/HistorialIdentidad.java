@@ -0,0 +1,47 @@
+package com.conversor.bench;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Copia de HistorialConversion (mismas columnas e índices) con el ID IDENTITY que usaba
+ * antes, solo para medir la inserción previa en InsercionHistorialCargaTest
+ */
+@Entity
+@Table(name = "historial_identidad", indexes = {
+        @Index(name = "idx_identidad_par_fecha", columnList = "monedaOrigen, monedaDestino, fechaHora"),
+        @Index(name = "idx_identidad_tipo_fecha_id", columnList = "tipoConversion, fechaHora, id"),
+        @Index(name = "idx_identidad_fecha", columnList = "fechaHora")
+})
+@Data
+@NoArgsConstructor
+public class HistorialIdentidad {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String monedaOrigen;
+
+    @Column(nullable = false)
+    private String monedaDestino;
+
+    @Column(nullable = false)
+    private Double cantidadOrigen;
+
+    @Column(nullable = false)
+    private Double cantidadDestino;
+
+    @Column(nullable = false)
+    private Double tasaCambio;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaHora;
+
+    @Column(length = 50)
+    private String tipoConversion;
+}
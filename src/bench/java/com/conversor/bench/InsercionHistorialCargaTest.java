@@ -0,0 +1,115 @@
+package com.conversor.bench;
+
+import com.conversor.model.HistorialConversion;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Prueba de carga de la inserción del historial sobre H2 en modo archivo: compara el ID
+ * IDENTITY anterior (sin lotes JDBC) con la secuencia pooled y hibernate.jdbc.batch_size.
+ * Se ejecuta con: mvn -Pbench test -Dtest=InsercionHistorialCargaTest
+ */
+@DataJpaTest(showSql = false,
+        properties = "spring.datasource.url=jdbc:h2:file:${java.io.tmpdir}/conversor-carga-${random.uuid}/historial")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+class InsercionHistorialCargaTest {
+
+    private static final int FILAS = 50_000;
+    private static final int FILAS_CALENTAMIENTO = 5_000;
+    // Igual que historial.escritura.tamano-lote: una transacción por lote del escritor
+    private static final int TAMANO_LOTE = 500;
+    // Mejora mínima exigida; en local la inserción por lotes rinde alrededor del doble
+    private static final double RELACION_MINIMA = 1.3;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void insertaConSecuenciaYLotes() {
+        insertar(FILAS_CALENTAMIENTO, this::identidad);
+        insertar(FILAS_CALENTAMIENTO, this::secuencia);
+
+        double antes = insertar(FILAS, this::identidad);
+        double despues = insertar(FILAS, this::secuencia);
+        double relacion = despues / antes;
+        log.info("Inserción en H2 archivo ({} filas, lotes de {}): IDENTITY {} filas/s, "
+                        + "secuencia pooled + batch_size {} filas/s (x{})",
+                FILAS, TAMANO_LOTE, Math.round(antes), Math.round(despues), String.format("%.2f", relacion));
+
+        assertEquals(FILAS + FILAS_CALENTAMIENTO, contar(HistorialIdentidad.class));
+        assertEquals(FILAS + FILAS_CALENTAMIENTO, contar(HistorialConversion.class));
+        assertTrue(relacion >= RELACION_MINIMA, () -> String.format(
+                "La inserción por lotes rinde x%.2f frente a IDENTITY; se esperaba al menos x%.2f",
+                relacion, RELACION_MINIMA));
+    }
+
+    /**
+     * Inserta las filas en transacciones de TAMANO_LOTE
+     * @return Filas insertadas por segundo
+     */
+    private double insertar(int filas, IntFunction<Object> fabrica) {
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+        long inicio = System.nanoTime();
+        for (int desde = 0; desde < filas; desde += TAMANO_LOTE) {
+            int inicioLote = desde;
+            int finLote = Math.min(filas, desde + TAMANO_LOTE);
+            transaccion.executeWithoutResult(estado -> {
+                for (int i = inicioLote; i < finLote; i++) {
+                    entityManager.persist(fabrica.apply(i));
+                }
+                entityManager.flush();
+                entityManager.clear();
+            });
+        }
+        return filas / ((System.nanoTime() - inicio) / 1e9);
+    }
+
+    private long contar(Class<?> entidad) {
+        return entityManager.createQuery("SELECT COUNT(e) FROM " + entidad.getSimpleName() + " e", Long.class)
+                .getSingleResult();
+    }
+
+    private Object identidad(int i) {
+        HistorialIdentidad fila = new HistorialIdentidad();
+        fila.setMonedaOrigen("USD");
+        fila.setMonedaDestino("EUR");
+        fila.setCantidadOrigen((double) i);
+        fila.setCantidadDestino(i * 0.92);
+        fila.setTasaCambio(0.92);
+        fila.setFechaHora(LocalDateTime.now());
+        fila.setTipoConversion("MONEDA");
+        return fila;
+    }
+
+    private Object secuencia(int i) {
+        return HistorialConversion.builder()
+                .monedaOrigen("USD")
+                .monedaDestino("EUR")
+                .cantidadOrigen((double) i)
+                .cantidadDestino(i * 0.92)
+                .tasaCambio(0.92)
+                .fechaHora(LocalDateTime.now())
+                .tipoConversion("MONEDA")
+                .build();
+    }
+}
@@ -0,0 +1,104 @@
+package com.conversor.bench;
+
+import com.conversor.model.IndiceMonedas;
+import com.conversor.model.SnapshotTasas;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara la tasa cruzada leída del árbol Gson de la respuesta /latest (como se hacía antes)
+ * con la lectura sobre el arreglo de tasas de SnapshotTasas, por código y por ordinal
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TasasBenchmark {
+
+    // Tamaño aproximado de conversion_rates en la respuesta real de ExchangeRate-API
+    private static final int CANTIDAD_MONEDAS = 160;
+    private static final int CANTIDAD_PARES = 1024;
+
+    private JsonObject respuesta;
+    private SnapshotTasas snapshot;
+    private String[] origenes;
+    private String[] destinos;
+    private int[] ordinalesOrigen;
+    private int[] ordinalesDestino;
+    private int siguiente;
+
+    @Setup
+    public void preparar() {
+        Random aleatorio = new Random(42);
+        List<String> codigos = new ArrayList<>();
+        codigos.add("USD");
+        // Códigos sintéticos de tres letras repartidos por todo el espacio A..Z
+        for (int i = 1; codigos.size() < CANTIDAD_MONEDAS; i++) {
+            int valor = i * 109;
+            String codigo = "" + (char) ('A' + valor / 676 % 26)
+                    + (char) ('A' + valor / 26 % 26)
+                    + (char) ('A' + valor % 26);
+            if (!codigos.contains(codigo)) {
+                codigos.add(codigo);
+            }
+        }
+
+        JsonObject tasasJson = new JsonObject();
+        IndiceMonedas indice = IndiceMonedas.de(codigos);
+        double[] tasas = new double[indice.tamano()];
+        Arrays.fill(tasas, Double.NaN);
+        for (String codigo : codigos) {
+            double tasa = codigo.equals("USD") ? 1.0 : 0.01 + aleatorio.nextDouble() * 1000;
+            tasasJson.addProperty(codigo, tasa);
+            tasas[indice.ordinal(codigo)] = tasa;
+        }
+        respuesta = new JsonObject();
+        respuesta.addProperty("result", "success");
+        respuesta.addProperty("base_code", "USD");
+        respuesta.add("conversion_rates", tasasJson);
+        snapshot = new SnapshotTasas("USD", indice, tasas, 0L, 0L);
+
+        origenes = new String[CANTIDAD_PARES];
+        destinos = new String[CANTIDAD_PARES];
+        ordinalesOrigen = new int[CANTIDAD_PARES];
+        ordinalesDestino = new int[CANTIDAD_PARES];
+        for (int i = 0; i < CANTIDAD_PARES; i++) {
+            // Copias de las cadenas para que la búsqueda no se beneficie de la identidad de las claves
+            origenes[i] = new String(codigos.get(aleatorio.nextInt(codigos.size())));
+            destinos[i] = new String(codigos.get(aleatorio.nextInt(codigos.size())));
+            ordinalesOrigen[i] = indice.ordinal(origenes[i]);
+            ordinalesDestino[i] = indice.ordinal(destinos[i]);
+        }
+    }
+
+    private int siguientePar() {
+        return siguiente = (siguiente + 1) & (CANTIDAD_PARES - 1);
+    }
+
+    @Benchmark
+    public double arbolGson() {
+        int par = siguientePar();
+        JsonObject tasas = respuesta.getAsJsonObject("conversion_rates");
+        return tasas.get(destinos[par]).getAsDouble() / tasas.get(origenes[par]).getAsDouble();
+    }
+
+    @Benchmark
+    public double snapshotPorCodigo() {
+        int par = siguientePar();
+        return snapshot.tasaCruzada(origenes[par], destinos[par]);
+    }
+
+    @Benchmark
+    public double snapshotPorOrdinal() {
+        int par = siguientePar();
+        return snapshot.tasaCruzada(ordinalesOrigen[par], ordinalesDestino[par]);
+    }
+}
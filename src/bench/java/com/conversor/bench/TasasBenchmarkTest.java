@@ -0,0 +1,40 @@
+package com.conversor.bench;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ejecuta TasasBenchmark desde Maven: mvn -Pbench test -Dtest=TasasBenchmarkTest
+ */
+class TasasBenchmarkTest {
+
+    @Test
+    void snapshotSuperaAlArbolGson() throws RunnerException {
+        Options opciones = new OptionsBuilder()
+                .include(TasasBenchmark.class.getName())
+                .build();
+        Collection<RunResult> resultados = new Runner(opciones).run();
+
+        Map<String, Double> operacionesPorSegundo = new HashMap<>();
+        for (RunResult resultado : resultados) {
+            String metodo = resultado.getParams().getBenchmark();
+            operacionesPorSegundo.put(metodo.substring(metodo.lastIndexOf('.') + 1),
+                    resultado.getPrimaryResult().getScore());
+        }
+        double gson = operacionesPorSegundo.get("arbolGson");
+        assertTrue(operacionesPorSegundo.get("snapshotPorCodigo") > gson,
+                () -> "La búsqueda por código no supera al árbol Gson: " + operacionesPorSegundo);
+        assertTrue(operacionesPorSegundo.get("snapshotPorOrdinal") > gson,
+                () -> "La búsqueda por ordinal no supera al árbol Gson: " + operacionesPorSegundo);
+    }
+}
@@ -1,16 +1,43 @@
 package com.conversor.controller;
 
+import com.conversor.model.CatalogoMonedas;
+import com.conversor.model.CursorHistorial;
 import com.conversor.model.HistorialConversion;
+import com.conversor.model.SnapshotTasas;
+import com.conversor.model.SolicitudConversion;
+import com.conversor.model.VersionDatos;
 import com.conversor.service.ConversionService;
+import com.conversor.service.DifusorTasas;
 import com.conversor.service.GraficosService;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Controlador para la API REST de conversiones
@@ -23,15 +50,31 @@ public class APIController {
 
     private final ConversionService conversionService;
     private final GraficosService graficosService;
+    private final DifusorTasas difusorTasas;
+    private final ObjectMapper objectMapper;
+    
+    private static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+    private static final String HEADER_SIGUIENTE_CURSOR = "X-Siguiente-Cursor";
+    private static final int LIMITE_MAXIMO_PAGINA = 1000;
+    private static final CacheControl REVALIDAR = CacheControl.noCache().cachePublic();
+    
+    @Value("${conversion.lote.max-elementos:10000}")
+    private int maxElementosLote;
     
     /**
-     * Obtiene la lista de monedas disponibles
+     * Obtiene la lista de monedas disponibles. Se responde con el JSON precalculado del
+     * catálogo y su ETag, por lo que una solicitud con If-None-Match vigente recibe 304
      */
     @GetMapping("/monedas")
-    public ResponseEntity<Map<String, String>> obtenerMonedas() {
+    public ResponseEntity<byte[]> obtenerMonedas(WebRequest request) {
         try {
-            Map<String, String> monedas = conversionService.obtenerMonedas();
-            return ResponseEntity.ok(monedas);
+            CatalogoMonedas catalogo = conversionService.obtenerCatalogoMonedas();
+            if (noModificado(request, catalogo.getVersion())) {
+                return null;
+            }
+            return okVersionado(catalogo.getVersion())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(catalogo.getJson());
         } catch (Exception e) {
             log.error("Error al obtener monedas", e);
             return ResponseEntity.internalServerError().build();
@@ -39,69 +82,217 @@ public class APIController {
     }
     
     /**
-     * Realiza una conversión entre monedas fiduciarias
+     * Realiza una conversión entre monedas fiduciarias. La respuesta se completa de forma
+     * asíncrona, por lo que el hilo de Tomcat no queda esperando a la API en el arranque en frío
      */
     @GetMapping("/convertir")
-    public ResponseEntity<Map<String, Object>> convertirMoneda(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> convertirMoneda(
             @RequestParam String monedaOrigen,
             @RequestParam String monedaDestino,
             @RequestParam double cantidad) {
         
+        return conversionService.convertirMonedaAsync(monedaOrigen, monedaDestino, cantidad)
+                .handle((resultado, error) -> {
+                    if (error != null) {
+                        log.error("Error al convertir monedas", error);
+                        return ResponseEntity.internalServerError().build();
+                    }
+                    
+                    return ResponseEntity.ok(resultado);
+                });
+    }
+    
+    /**
+     * Realiza un lote de conversiones entre monedas fiduciarias recibido como arreglo JSON.
+     * Todas se resuelven con la misma instantánea de tasas, indicada en la respuesta. El
+     * arreglo se lee elemento a elemento, de modo que un lote demasiado grande se rechaza
+     * con 413 en cuanto supera el límite, sin deserializarlo completo
+     */
+    @PostMapping(value = "/convertir/lote", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> convertirLote(InputStream cuerpo) throws IOException {
+        return leerLote(cuerpo, true);
+    }
+    
+    /**
+     * Realiza un lote de conversiones recibido como NDJSON (una solicitud JSON por línea),
+     * leyendo las solicitudes a medida que llegan en el cuerpo
+     */
+    @PostMapping(value = "/convertir/lote", consumes = MEDIA_TYPE_NDJSON)
+    public ResponseEntity<Map<String, Object>> convertirLoteNdjson(InputStream cuerpo) throws IOException {
+        return leerLote(cuerpo, false);
+    }
+    
+    /**
+     * Lee las solicitudes de un arreglo JSON o de valores JSON consecutivos (NDJSON) y
+     * responde 413 en cuanto superan el límite. Los elementos null se conservan para
+     * responder con un error en su posición
+     */
+    private ResponseEntity<Map<String, Object>> leerLote(InputStream cuerpo, boolean arreglo) throws IOException {
+        List<SolicitudConversion> solicitudes = new ArrayList<>();
+        try (JsonParser lector = objectMapper.createParser(cuerpo)) {
+            if (arreglo && lector.nextToken() != JsonToken.START_ARRAY) {
+                return ResponseEntity.badRequest().build();
+            }
+            JsonToken fin = arreglo ? JsonToken.END_ARRAY : null;
+            for (JsonToken token = lector.nextToken(); token != fin; token = lector.nextToken()) {
+                if (token == null) {
+                    return ResponseEntity.badRequest().build();
+                }
+                if (solicitudes.size() == maxElementosLote) {
+                    return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+                }
+                solicitudes.add(token == JsonToken.VALUE_NULL
+                        ? null : objectMapper.readValue(lector, SolicitudConversion.class));
+            }
+        } catch (JsonProcessingException e) {
+            log.debug("Lote JSON inválido: {}", e.getOriginalMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        return responderLote(solicitudes);
+    }
+    
+    private ResponseEntity<Map<String, Object>> responderLote(List<SolicitudConversion> solicitudes) {
         try {
-            double resultado = conversionService.convertirMoneda(monedaOrigen, monedaDestino, cantidad);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("monedaOrigen", monedaOrigen);
-            response.put("monedaDestino", monedaDestino);
-            response.put("cantidadOrigen", cantidad);
-            response.put("cantidadDestino", resultado);
-            
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(conversionService.convertirLote(solicitudes));
         } catch (Exception e) {
-            log.error("Error al convertir monedas", e);
+            log.error("Error al convertir el lote de monedas", e);
             return ResponseEntity.internalServerError().build();
         }
     }
     
     /**
-     * Realiza una conversión entre criptomonedas y monedas fiduciarias
+     * Convierte una cantidad a todas las monedas soportadas, o a las indicadas en "monedas".
+     * La respuesta lleva un ETag derivado de la versión de la instantánea y de los parámetros,
+     * por lo que una solicitud repetida con If-None-Match recibe 304 sin recalcular nada
      */
-    @GetMapping("/convertir-cripto")
-    public ResponseEntity<Map<String, Object>> convertirCripto(
-            @RequestParam String criptomoneda,
-            @RequestParam String monedaFiat,
-            @RequestParam double cantidad) {
+    @GetMapping("/convertir/todas")
+    public ResponseEntity<Map<String, Object>> convertirATodas(
+            @RequestParam String monedaOrigen,
+            @RequestParam double cantidad,
+            @RequestParam(required = false) List<String> monedas,
+            WebRequest request) {
         
         try {
-            double resultado = conversionService.convertirCripto(criptomoneda, monedaFiat, cantidad);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("criptomoneda", criptomoneda);
-            response.put("monedaFiat", monedaFiat);
-            response.put("cantidadOrigen", cantidad);
-            response.put("cantidadDestino", resultado);
-            
-            return ResponseEntity.ok(response);
+            SnapshotTasas snapshot = conversionService.obtenerSnapshotTasas();
+            VersionDatos version = VersionDatos.de(snapshot).conParametros(monedaOrigen, cantidad, monedas);
+            if (noModificado(request, version)) {
+                return null;
+            }
+            return okVersionado(version)
+                    .body(conversionService.convertirATodas(snapshot, monedaOrigen, cantidad, monedas));
+        } catch (IllegalArgumentException e) {
+            log.debug("Conversión a todas las monedas rechazada: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
-            log.error("Error al convertir criptomonedas", e);
+            log.error("Error al convertir a todas las monedas", e);
             return ResponseEntity.internalServerError().build();
         }
     }
     
+    /**
+     * Abre un flujo Server-Sent Events con las tasas de los pares indicados ("USD-EUR,EUR-MXN").
+     * Envía primero las tasas vigentes y después, con cada actualización, solo las que cambian
+     */
+    @GetMapping(value = "/tasas/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> suscribirTasas(@RequestParam List<String> pares) {
+        try {
+            return ResponseEntity.ok(difusorTasas.suscribir(pares));
+        } catch (IllegalArgumentException e) {
+            log.debug("Suscripción a tasas rechazada: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * Realiza una conversión entre criptomonedas y monedas fiduciarias. La respuesta se
+     * completa de forma asíncrona cuando llega la cotización
+     */
+    @GetMapping("/convertir-cripto")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> convertirCripto(
+            @RequestParam String criptomoneda,
+            @RequestParam String monedaFiat,
+            @RequestParam double cantidad) {
+        
+        return conversionService.convertirCriptoAsync(criptomoneda, monedaFiat, cantidad)
+                .handle((resultado, error) -> {
+                    if (error != null) {
+                        Throwable causa = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        if (causa instanceof IllegalArgumentException) {
+                            log.debug("Conversión de criptomonedas rechazada: {}", causa.getMessage());
+                            return ResponseEntity.badRequest().build();
+                        }
+                        log.error("Error al convertir criptomonedas", error);
+                        return ResponseEntity.internalServerError().build();
+                    }
+                    
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("criptomoneda", criptomoneda);
+                    response.put("monedaFiat", monedaFiat);
+                    response.put("cantidadOrigen", cantidad);
+                    response.put("cantidadDestino", resultado);
+                    
+                    return ResponseEntity.ok(response);
+                });
+    }
+    
     /**
      * Obtiene el historial de conversiones recientes
      */
     @GetMapping("/historial")
-    public ResponseEntity<List<HistorialConversion>> obtenerHistorial() {
-        return ResponseEntity.ok(conversionService.obtenerUltimasConversiones());
+    public ResponseEntity<List<HistorialConversion>> obtenerHistorial(WebRequest request) {
+        VersionDatos version = conversionService.versionHistorial();
+        if (noModificado(request, version)) {
+            return null;
+        }
+        return okVersionado(version).body(conversionService.obtenerUltimasConversiones());
     }
     
     /**
-     * Obtiene el historial de conversiones por tipo
+     * Exporta todo el historial como NDJSON (una conversión JSON por línea), escribiendo
+     * cada fila a medida que se lee de la base de datos
+     */
+    @GetMapping(value = "/historial/exportar", produces = MEDIA_TYPE_NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportarHistorial() {
+        StreamingResponseBody cuerpo = salida -> {
+            Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+            conversionService.recorrerHistorial(conversion -> {
+                try {
+                    escritor.write(objectMapper.writeValueAsString(conversion));
+                    escritor.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            escritor.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(MEDIA_TYPE_NDJSON)).body(cuerpo);
+    }
+    
+    /**
+     * Obtiene una página del historial de conversiones por tipo. Si la página está completa,
+     * el encabezado X-Siguiente-Cursor indica el cursor para pedir la siguiente
      */
     @GetMapping("/historial/{tipo}")
-    public ResponseEntity<List<HistorialConversion>> obtenerHistorialPorTipo(@PathVariable String tipo) {
-        return ResponseEntity.ok(conversionService.obtenerHistorialPorTipo(tipo));
+    public ResponseEntity<List<HistorialConversion>> obtenerHistorialPorTipo(
+            @PathVariable String tipo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limite) {
+        
+        CursorHistorial cursorHistorial;
+        try {
+            cursorHistorial = cursor == null ? null : CursorHistorial.parse(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        int limiteAcotado = Math.max(1, Math.min(limite, LIMITE_MAXIMO_PAGINA));
+        
+        List<HistorialConversion> historial = conversionService.obtenerHistorialPorTipo(tipo, cursorHistorial, limiteAcotado);
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok();
+        if (historial.size() == limiteAcotado) {
+            respuesta.header(HEADER_SIGUIENTE_CURSOR, CursorHistorial.de(historial.get(historial.size() - 1)).toString());
+        }
+        return respuesta.body(historial);
     }
     
     /**
@@ -110,11 +301,17 @@ public class APIController {
     @GetMapping("/graf/historial-tasas")
     public ResponseEntity<Map<String, Object>> obtenerHistorialTasas(
             @RequestParam String monedaOrigen, 
-            @RequestParam String monedaDestino) {
+            @RequestParam String monedaDestino,
+            @RequestParam(required = false) Integer dias,
+            WebRequest request) {
         
         try {
-            Map<String, Object> result = graficosService.obtenerDatosHistoricosTasas(monedaOrigen, monedaDestino);
-            return ResponseEntity.ok(result);
+            VersionDatos version = graficosService.versionDatosHistoricosTasas(monedaOrigen, monedaDestino, dias);
+            if (noModificado(request, version)) {
+                return null;
+            }
+            Map<String, Object> result = graficosService.obtenerDatosHistoricosTasas(monedaOrigen, monedaDestino, dias);
+            return okVersionado(version).body(result);
         } catch (Exception e) {
             log.error("Error al obtener historial de tasas", e);
             return ResponseEntity.internalServerError().build();
@@ -125,10 +322,14 @@ public class APIController {
      * Obtiene datos para el gráfico de distribución de monedas
      */
     @GetMapping("/graf/distribucion-monedas")
-    public ResponseEntity<Map<String, Object>> obtenerDistribucionMonedas() {
+    public ResponseEntity<Map<String, Object>> obtenerDistribucionMonedas(WebRequest request) {
         try {
+            VersionDatos version = graficosService.versionDistribuciones();
+            if (noModificado(request, version)) {
+                return null;
+            }
             Map<String, Object> result = graficosService.obtenerDatosDistribucionMonedas();
-            return ResponseEntity.ok(result);
+            return okVersionado(version).body(result);
         } catch (Exception e) {
             log.error("Error al obtener distribución de monedas", e);
             return ResponseEntity.internalServerError().build();
@@ -139,13 +340,40 @@ public class APIController {
      * Obtiene datos para el gráfico de distribución por tipos de conversión
      */
     @GetMapping("/graf/distribucion-tipos")
-    public ResponseEntity<Map<String, Object>> obtenerDistribucionTipos() {
+    public ResponseEntity<Map<String, Object>> obtenerDistribucionTipos(WebRequest request) {
         try {
+            VersionDatos version = graficosService.versionDistribuciones();
+            if (noModificado(request, version)) {
+                return null;
+            }
             Map<String, Object> result = graficosService.obtenerDatosDistribucionTipos();
-            return ResponseEntity.ok(result);
+            return okVersionado(version).body(result);
         } catch (Exception e) {
             log.error("Error al obtener distribución de tipos", e);
             return ResponseEntity.internalServerError().build();
         }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Indica si el cliente ya tiene la versión vigente (If-None-Match / If-Modified-Since);
+     * en ese caso la respuesta queda como 304 y no hace falta construir el cuerpo
+     */
+    private static boolean noModificado(WebRequest request, VersionDatos version) {
+        long ultimaModificacion = version.getUltimaModificacionMillis();
+        return request.checkNotModified(version.getEtag(), ultimaModificacion > 0 ? ultimaModificacion : -1);
+    }
+    
+    /**
+     * Respuesta 200 con los encabezados de caché de una versión. Los clientes y la CDN pueden
+     * guardarla, pero deben revalidarla con una solicitud condicional antes de reutilizarla
+     */
+    private static ResponseEntity.BodyBuilder okVersionado(VersionDatos version) {
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .cacheControl(REVALIDAR)
+                .eTag(version.getEtag());
+        if (version.getUltimaModificacionMillis() > 0) {
+            respuesta.lastModified(version.getUltimaModificacionMillis());
+        }
+        return respuesta;
+    }
+}
@@ -0,0 +1,185 @@
+package com.conversor.http;
+
+import com.google.gson.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Agrupa durante una ventana corta las consultas de cotización de criptomonedas hacia
+ * una misma moneda fiduciaria y las resuelve con una única llamada multi-símbolo a
+ * CoinMarketCap, repartiendo luego cada precio a quien lo solicitó.
+ */
+@Slf4j
+@Component
+public class AgrupadorCotizacionesCripto {
+
+    private static final Pattern FORMATO_SIMBOLO = Pattern.compile("[A-Z0-9]{1,20}");
+
+    private final ClienteCoinMarketCap clienteCoinMarketCap;
+    private final long ventanaMillis;
+    private final int maxSimbolos;
+    private final ScheduledExecutorService programador;
+
+    /**
+     * Lotes abiertos por moneda fiduciaria. Protegido por el monitor de esta instancia
+     */
+    private final Map<String, Lote> lotesAbiertos = new HashMap<>();
+
+    public AgrupadorCotizacionesCripto(
+            ClienteCoinMarketCap clienteCoinMarketCap,
+            @Value("${cripto.lote.ventana-millis:10}") long ventanaMillis,
+            @Value("${cripto.lote.max-simbolos:100}") int maxSimbolos) {
+        this.clienteCoinMarketCap = clienteCoinMarketCap;
+        this.ventanaMillis = ventanaMillis;
+        this.maxSimbolos = maxSimbolos;
+        this.programador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "agrupador-cotizaciones");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    public void detener() {
+        programador.shutdownNow();
+    }
+
+    /**
+     * Obtiene el precio de una criptomoneda en una moneda fiduciaria. La consulta se
+     * agrega al lote abierto para esa moneda y se resuelve cuando el lote se envía
+     * @param simboloCripto Símbolo de la criptomoneda (ej. BTC)
+     * @param simboloFiat Símbolo de la moneda fiduciaria (ej. USD)
+     * @return CompletableFuture con el precio de una unidad de la criptomoneda; falla con
+     * IllegalArgumentException si algún símbolo no tiene un formato válido
+     */
+    public CompletableFuture<Double> obtenerPrecio(String simboloCripto, String simboloFiat) {
+        String cripto = simboloCripto.toUpperCase(Locale.ROOT);
+        String fiat = simboloFiat.toUpperCase(Locale.ROOT);
+        // Se rechaza antes de unirse al lote: la URL es compartida y un símbolo con espacios,
+        // "&" o "," haría fallar o alteraría la consulta de todos los demás
+        if (!FORMATO_SIMBOLO.matcher(cripto).matches() || !FORMATO_SIMBOLO.matcher(fiat).matches()) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Símbolo inválido: " + simboloCripto + " / " + simboloFiat));
+        }
+
+        Lote listo = null;
+        CompletableFuture<Double> precio;
+        synchronized (this) {
+            Lote lote = lotesAbiertos.get(fiat);
+            if (lote == null) {
+                lote = new Lote(fiat);
+                lotesAbiertos.put(fiat, lote);
+                Lote programado = lote;
+                programador.schedule(() -> cerrarYEnviar(programado), ventanaMillis, TimeUnit.MILLISECONDS);
+            }
+            precio = lote.esperas.computeIfAbsent(cripto, k -> new CompletableFuture<>());
+            if (lote.esperas.size() >= maxSimbolos) {
+                lotesAbiertos.remove(fiat);
+                listo = lote;
+            }
+        }
+
+        if (listo != null) {
+            enviar(listo);
+        }
+        return precio.copy();
+    }
+
+    /**
+     * Cierra el lote por vencimiento de la ventana si todavía no se envió por tamaño
+     */
+    private void cerrarYEnviar(Lote lote) {
+        synchronized (this) {
+            if (!lotesAbiertos.remove(lote.fiat, lote)) {
+                return;
+            }
+        }
+        enviar(lote);
+    }
+
+    /**
+     * Envía el lote en una sola solicitud y reparte los precios recibidos
+     */
+    private void enviar(Lote lote) {
+        Map<String, CompletableFuture<Double>> esperas = lote.esperas;
+        log.debug("Enviando lote de {} cotizaciones hacia {}", esperas.size(), lote.fiat);
+
+        clienteCoinMarketCap.obtenerCotizacionesAsync(esperas.keySet(), lote.fiat)
+                .whenComplete((json, error) -> {
+                    if (error != null) {
+                        Throwable causa = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        if (esperas.size() > 1 && esSimboloInvalido(causa)) {
+                            // Un símbolo inválido hace fallar toda la solicitud; se reintenta por separado
+                            log.debug("Falló el lote hacia {}: {}. Consultando símbolos por separado",
+                                    lote.fiat, causa.getMessage());
+                            esperas.forEach((cripto, espera) -> enviar(new Lote(lote.fiat, cripto, espera)));
+                        } else {
+                            // Cualquier otro fallo afectaría igual a cada símbolo por separado
+                            esperas.values().forEach(espera -> espera.completeExceptionally(causa));
+                        }
+                        return;
+                    }
+                    esperas.forEach((cripto, espera) -> {
+                        try {
+                            espera.complete(extraerPrecio(json, cripto, lote.fiat));
+                        } catch (Exception e) {
+                            espera.completeExceptionally(
+                                    new IOException("Sin cotización para " + cripto + " en " + lote.fiat, e));
+                        }
+                    });
+                });
+    }
+
+    /**
+     * CoinMarketCap responde 400 indicando el parámetro "symbol" cuando alguno no existe
+     */
+    private static boolean esSimboloInvalido(Throwable error) {
+        return error instanceof ErrorHttpException
+                && ((ErrorHttpException) error).getCodigoEstado() == 400
+                && ((ErrorHttpException) error).getDetalle().toLowerCase(Locale.ROOT).contains("symbol");
+    }
+
+    /**
+     * Extrae el precio de la respuesta JSON de cryptocurrency/quotes/latest
+     */
+    private static double extraerPrecio(JsonObject json, String cripto, String fiat) {
+        return json.getAsJsonObject("data")
+                .getAsJsonObject(cripto)
+                .getAsJsonObject("quote")
+                .getAsJsonObject(fiat)
+                .get("price").getAsDouble();
+    }
+
+    /**
+     * Conjunto de consultas pendientes hacia una misma moneda fiduciaria
+     */
+    private static final class Lote {
+        private final String fiat;
+        private final Map<String, CompletableFuture<Double>> esperas;
+
+        private Lote(String fiat) {
+            this.fiat = fiat;
+            this.esperas = new HashMap<>();
+        }
+
+        private Lote(String fiat, String cripto, CompletableFuture<Double> espera) {
+            this.fiat = fiat;
+            this.esperas = Collections.singletonMap(cripto, espera);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.conversor.http;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cortocircuito (circuit breaker) para un host externo. Tras un número de fallos
+ * consecutivos se abre y rechaza las solicitudes de inmediato durante un tiempo de
+ * espera; luego deja pasar una única solicitud de prueba (semiabierto) y se cierra
+ * de nuevo si esta tiene éxito.
+ */
+@Slf4j
+class CircuitoHost {
+
+    enum Estado { CERRADO, ABIERTO, SEMIABIERTO }
+
+    private final String host;
+    private final int umbralFallos;
+    private final long esperaAperturaMillis;
+
+    private Estado estado = Estado.CERRADO;
+    private int fallosConsecutivos;
+    private long abiertoHasta;
+
+    CircuitoHost(String host, int umbralFallos, long esperaAperturaMillis) {
+        this.host = host;
+        this.umbralFallos = umbralFallos;
+        this.esperaAperturaMillis = esperaAperturaMillis;
+    }
+
+    /**
+     * Indica si se permite realizar una solicitud al host. Cuando el tiempo de apertura
+     * ha transcurrido, solo la primera llamada obtiene permiso para la solicitud de prueba
+     */
+    synchronized boolean permitirSolicitud() {
+        switch (estado) {
+            case CERRADO:
+                return true;
+            case ABIERTO:
+                if (System.currentTimeMillis() >= abiertoHasta) {
+                    estado = Estado.SEMIABIERTO;
+                    log.info("Circuito de {} semiabierto, enviando solicitud de prueba", host);
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    synchronized void registrarExito() {
+        if (estado != Estado.CERRADO) {
+            log.info("Circuito de {} cerrado tras una solicitud exitosa", host);
+        }
+        estado = Estado.CERRADO;
+        fallosConsecutivos = 0;
+    }
+
+    synchronized void registrarFallo() {
+        fallosConsecutivos++;
+        if (estado == Estado.SEMIABIERTO || fallosConsecutivos >= umbralFallos) {
+            if (estado != Estado.ABIERTO) {
+                log.warn("Circuito de {} abierto tras {} fallos consecutivos", host, fallosConsecutivos);
+            }
+            estado = Estado.ABIERTO;
+            abiertoHasta = System.currentTimeMillis() + esperaAperturaMillis;
+        }
+    }
+
+    synchronized Estado getEstado() {
+        return estado;
+    }
+}
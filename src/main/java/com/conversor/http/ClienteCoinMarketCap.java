@@ -7,7 +7,12 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Cliente para la API de CoinMarketCap
@@ -19,11 +24,21 @@ public class ClienteCoinMarketCap {
     private final String apiKey;
     private static final String URL_BASE = "https://pro-api.coinmarketcap.com/v1/";
     private static final String HEADER_NAME = "X-CMC_PRO_API_KEY";
+    private static final String MONEDA_LISTADO = "USD";
+    private static final ClienteHttpRequest.LectorRespuesta<ListadoCripto> LECTOR_LISTADO =
+            cuerpo -> ListadoCripto.leer(cuerpo, MONEDA_LISTADO);
+    private static final String ENDPOINT_LISTADO = "cryptocurrency/listings/latest";
+    private static final String ENDPOINT_COTIZACIONES = "cryptocurrency/quotes/latest";
     private final ClienteHttpRequest clienteHttp;
+    private final Duration timeout;
     
-    public ClienteCoinMarketCap(@Value("${api.coinmarketcap.key:}") String apiKey) {
+    public ClienteCoinMarketCap(
+            @Value("${api.coinmarketcap.key:}") String apiKey,
+            ClienteHttpRequest clienteHttp,
+            @Value("${http.coinmarketcap.timeout-millis:15000}") long timeoutMillis) {
         this.apiKey = apiKey;
-        this.clienteHttp = new ClienteHttpRequest();
+        this.clienteHttp = clienteHttp;
+        this.timeout = Duration.ofMillis(timeoutMillis);
         
         if (this.apiKey == null || this.apiKey.isEmpty()) {
             log.warn("La API key de CoinMarketCap no está configurada. Las solicitudes a la API fallarán.");
@@ -31,17 +46,18 @@ public class ClienteCoinMarketCap {
     }
     
     /**
-     * Obtiene la lista de criptomonedas
+     * Obtiene la lista de criptomonedas con su precio en USD. La respuesta se lee en
+     * streaming y solo se conservan el símbolo y el precio de cada criptomoneda
      * @param limite Límite de resultados (max 5000)
-     * @return JsonObject con la lista de criptomonedas
+     * @return Listado en el orden de la API (por capitalización)
      * @throws IOException Si ocurre un error de conexión
      */
-    public JsonObject listarCriptomonedas(int limite) throws IOException {
-        String url = URL_BASE + "cryptocurrency/listings/latest?limit=" + limite;
+    public ListadoCripto listarCriptomonedas(int limite) throws IOException {
         try {
-            log.debug("Realizando solicitud a: {}", url);
-            String respuesta = clienteHttp.get(url, apiKey, HEADER_NAME);
-            return JsonParser.parseString(respuesta).getAsJsonObject();
+            return listarCriptomonedasAsync(limite).get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            throw causa instanceof IOException ? (IOException) causa : new IOException(causa.getMessage(), causa);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new IOException("La solicitud fue interrumpida", e);
@@ -49,14 +65,14 @@ public class ClienteCoinMarketCap {
     }
     
     /**
-     * Obtiene la lista de criptomonedas de forma asíncrona
+     * Obtiene la lista de criptomonedas con su precio en USD de forma asíncrona
      * @param limite Límite de resultados (max 5000)
-     * @return CompletableFuture<JsonObject> con la lista de criptomonedas
+     * @return CompletableFuture<ListadoCripto> con el listado en el orden de la API
      */
-    public CompletableFuture<JsonObject> listarCriptomonedasAsync(int limite) {
+    public CompletableFuture<ListadoCripto> listarCriptomonedasAsync(int limite) {
         String url = URL_BASE + "cryptocurrency/listings/latest?limit=" + limite;
-        return clienteHttp.getAsync(url, apiKey, HEADER_NAME)
-                .thenApply(respuesta -> JsonParser.parseString(respuesta).getAsJsonObject());
+        log.debug("Realizando solicitud a: {}", url);
+        return clienteHttp.getAsync(ENDPOINT_LISTADO, url, apiKey, HEADER_NAME, timeout, LECTOR_LISTADO);
     }
     
     /**
@@ -66,10 +82,10 @@ public class ClienteCoinMarketCap {
      * @throws IOException Si ocurre un error de conexión
      */
     public JsonObject obtenerInfoCriptomoneda(String simbolo) throws IOException {
-        String url = URL_BASE + "cryptocurrency/quotes/latest?symbol=" + simbolo;
+        String url = URL_BASE + "cryptocurrency/quotes/latest?symbol=" + codificar(simbolo);
         try {
             log.debug("Realizando solicitud a: {}", url);
-            String respuesta = clienteHttp.get(url, apiKey, HEADER_NAME);
+            String respuesta = clienteHttp.get(ENDPOINT_COTIZACIONES, url, apiKey, HEADER_NAME, timeout);
             return JsonParser.parseString(respuesta).getAsJsonObject();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -83,8 +99,8 @@ public class ClienteCoinMarketCap {
      * @return CompletableFuture<JsonObject> con la información de la criptomoneda
      */
     public CompletableFuture<JsonObject> obtenerInfoCriptomonedaAsync(String simbolo) {
-        String url = URL_BASE + "cryptocurrency/quotes/latest?symbol=" + simbolo;
-        return clienteHttp.getAsync(url, apiKey, HEADER_NAME)
+        String url = URL_BASE + "cryptocurrency/quotes/latest?symbol=" + codificar(simbolo);
+        return clienteHttp.getAsync(ENDPOINT_COTIZACIONES, url, apiKey, HEADER_NAME, timeout)
                 .thenApply(respuesta -> JsonParser.parseString(respuesta).getAsJsonObject());
     }
     
@@ -98,10 +114,11 @@ public class ClienteCoinMarketCap {
     public JsonObject obtenerTasaConversion(String simboloCripto, String simboloFiat) throws IOException {
         // Según la documentación de CoinMarketCap necesitamos usar el endpoint correcto
         // para la versión 1 de la API
-        String url = URL_BASE + "cryptocurrency/quotes/latest?symbol=" + simboloCripto + "&convert=" + simboloFiat;
+        String url = URL_BASE + "cryptocurrency/quotes/latest?symbol=" + codificar(simboloCripto)
+                + "&convert=" + codificar(simboloFiat);
         try {
             log.debug("Realizando solicitud a: {}", url);
-            String respuesta = clienteHttp.get(url, apiKey, HEADER_NAME);
+            String respuesta = clienteHttp.get(ENDPOINT_COTIZACIONES, url, apiKey, HEADER_NAME, timeout);
             log.debug("Respuesta recibida: {}", respuesta);
             return JsonParser.parseString(respuesta).getAsJsonObject();
         } catch (InterruptedException e) {
@@ -117,8 +134,30 @@ public class ClienteCoinMarketCap {
      * @return CompletableFuture<JsonObject> con la información de conversión
      */
     public CompletableFuture<JsonObject> obtenerTasaConversionAsync(String simboloCripto, String simboloFiat) {
-        String url = URL_BASE + "cryptocurrency/quotes/latest?symbol=" + simboloCripto + "&convert=" + simboloFiat;
-        return clienteHttp.getAsync(url, apiKey, HEADER_NAME)
+        String url = URL_BASE + "cryptocurrency/quotes/latest?symbol=" + codificar(simboloCripto)
+                + "&convert=" + codificar(simboloFiat);
+        return clienteHttp.getAsync(ENDPOINT_COTIZACIONES, url, apiKey, HEADER_NAME, timeout)
+                .thenApply(respuesta -> JsonParser.parseString(respuesta).getAsJsonObject());
+    }
+    
+    /**
+     * Obtiene las cotizaciones de varias criptomonedas en una sola solicitud de forma asíncrona
+     * @param simbolosCripto Símbolos de las criptomonedas (ej. BTC, ETH)
+     * @param simboloFiat Símbolo de la moneda fiduciaria (ej. USD, EUR)
+     * @return CompletableFuture<JsonObject> con las cotizaciones indexadas por símbolo en "data"
+     */
+    public CompletableFuture<JsonObject> obtenerCotizacionesAsync(Collection<String> simbolosCripto, String simboloFiat) {
+        String url = URL_BASE + "cryptocurrency/quotes/latest?symbol=" + codificar(String.join(",", simbolosCripto))
+                + "&convert=" + codificar(simboloFiat);
+        log.debug("Realizando solicitud agrupada a: {}", url);
+        return clienteHttp.getAsync(ENDPOINT_COTIZACIONES, url, apiKey, HEADER_NAME, timeout)
                 .thenApply(respuesta -> JsonParser.parseString(respuesta).getAsJsonObject());
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Codifica un valor de parámetro de la consulta
+     */
+    private static String codificar(String valor) {
+        return URLEncoder.encode(valor, StandardCharsets.UTF_8);
+    }
+}
\ No newline at end of file
@@ -1,83 +1,386 @@
 package com.conversor.http;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 /**
- * Cliente HTTP para realizar solicitudes a APIs externas utilizando HttpClient moderno
+ * Cliente HTTP para realizar solicitudes a APIs externas utilizando HttpClient moderno.
+ * Cada host tiene su propio cortocircuito y los errores transitorios se reintentan un
+ * número acotado de veces con espera exponencial y jitter; los tiempos de espera agotados
+ * no se reintentan, para que una solicitud no tarde varias veces su timeout. Las solicitudes idénticas
+ * concurrentes con el mismo lector se agrupan (single-flight) y comparten una única
+ * llamada en curso y su resultado ya leído.
+ * Se usa una única instancia compartida (ver {@link ConfiguracionHttp}); las respuestas
+ * se piden comprimidas con gzip y se descomprimen al recibirlas. El cuerpo se consume
+ * como flujo: quien llama puede entregar un {@link LectorRespuesta} que extraiga solo
+ * los campos que necesita sin acumular la respuesta completa en memoria. Cada llamada se
+ * mide por host y endpoint: la duración total con reintentos y, aparte, la lectura del cuerpo.
  */
 public class ClienteHttpRequest {
-    
+
+    private static final int UMBRAL_FALLOS = 5;
+    private static final long ESPERA_APERTURA_MILLIS = 30_000;
+    private static final int MAX_REINTENTOS = 2;
+    private static final long ESPERA_BASE_MILLIS = 200;
+    private static final int MAX_BYTES_DETALLE = 2048;
+
+    private static final LectorRespuesta<String> LECTOR_TEXTO =
+            cuerpo -> new String(cuerpo.readAllBytes(), StandardCharsets.UTF_8);
+
+    private final ExecutorService ejecutor;
+    /**
+     * Los cuerpos se leen fuera del ejecutor del HttpClient, que es el que los va entregando
+     */
+    private final ExecutorService ejecutorLectura;
     private final HttpClient cliente;
-    
-    public ClienteHttpRequest() {
+    private final Duration timeoutPorDefecto;
+    private final MeterRegistry registro;
+    private final Map<String, CircuitoHost> circuitos = new ConcurrentHashMap<>();
+    private final Map<ClaveSolicitud, CompletableFuture<?>> solicitudesEnCurso = new ConcurrentHashMap<>();
+
+    /**
+     * @param hilos Hilos del ejecutor en el que el HttpClient completa las respuestas y
+     *              del ejecutor en el que se leen los cuerpos
+     * @param timeoutConexion Tiempo máximo para establecer una conexión
+     * @param timeoutPorDefecto Tiempo máximo de respuesta si la solicitud no indica otro
+     * @param registro Registro de métricas de las llamadas
+     */
+    public ClienteHttpRequest(int hilos, Duration timeoutConexion, Duration timeoutPorDefecto, MeterRegistry registro) {
+        AtomicInteger contador = new AtomicInteger();
+        this.ejecutor = Executors.newFixedThreadPool(hilos, tarea -> {
+            Thread hilo = new Thread(tarea, "http-cliente-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        AtomicInteger contadorLectura = new AtomicInteger();
+        this.ejecutorLectura = Executors.newFixedThreadPool(hilos, tarea -> {
+            Thread hilo = new Thread(tarea, "http-lectura-" + contadorLectura.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
         this.cliente = HttpClient.newBuilder()
                 .version(HttpClient.Version.HTTP_2)
-                .connectTimeout(Duration.ofSeconds(10))
+                .connectTimeout(timeoutConexion)
+                .executor(ejecutor)
                 .build();
+        this.timeoutPorDefecto = timeoutPorDefecto;
+        this.registro = registro;
+    }
+
+    /**
+     * Detiene el ejecutor del cliente al cerrar la aplicación
+     */
+    public void cerrar() {
+        ejecutor.shutdownNow();
+        ejecutorLectura.shutdownNow();
     }
-    
+
     /**
      * Realiza una solicitud GET a la URL especificada
+     * @param endpoint Nombre del endpoint para las métricas (ej. "latest"); no debe contener claves ni parámetros
      * @param urlStr URL a la cual realizar la solicitud
      * @param apiKey Clave de API si es necesaria (puede ser null)
      * @param headerName Nombre del encabezado para la API key
      * @return Respuesta del servidor en formato String
-     * @throws IOException Si ocurre un error de conexión
+     * @throws IOException Si ocurre un error de conexión o el circuito del host está abierto
      * @throws InterruptedException Si la solicitud es interrumpida
      */
-    public String get(String urlStr, String apiKey, String headerName) throws IOException, InterruptedException {
-        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-                .uri(URI.create(urlStr))
-                .GET()
-                .header("Accept", "application/json")
-                .timeout(Duration.ofSeconds(30));
-        
-        if (apiKey != null && headerName != null) {
-            requestBuilder.header(headerName, apiKey);
-        }
-        
-        HttpRequest request = requestBuilder.build();
-        
-        HttpResponse<String> response = cliente.send(request, HttpResponse.BodyHandlers.ofString());
-        
-        if (response.statusCode() != 200) {
-            throw new IOException("Error HTTP: " + response.statusCode());
+    public String get(String endpoint, String urlStr, String apiKey, String headerName)
+            throws IOException, InterruptedException {
+        return get(endpoint, urlStr, apiKey, headerName, timeoutPorDefecto);
+    }
+
+    /**
+     * Realiza una solicitud GET con un tiempo máximo de respuesta propio del endpoint
+     * @param timeout Tiempo máximo de respuesta de cada intento
+     * @see #get(String, String, String, String)
+     */
+    public String get(String endpoint, String urlStr, String apiKey, String headerName, Duration timeout)
+            throws IOException, InterruptedException {
+        try {
+            return getAsync(endpoint, urlStr, apiKey, headerName, timeout).get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof IOException) {
+                throw (IOException) causa;
+            }
+            throw new IOException(causa.getMessage(), causa);
         }
-        
-        return response.body();
     }
-    
+
     /**
-     * Realiza una solicitud GET asíncrona a la URL especificada
+     * Realiza una solicitud GET asíncrona a la URL especificada. Si ya hay una solicitud
+     * en curso para la misma URL y credenciales, se reutiliza su resultado
+     * @param endpoint Nombre del endpoint para las métricas (ej. "latest"); no debe contener claves ni parámetros
      * @param urlStr URL a la cual realizar la solicitud
      * @param apiKey Clave de API si es necesaria (puede ser null)
      * @param headerName Nombre del encabezado para la API key
      * @return CompletableFuture con la respuesta del servidor
      */
-    public java.util.concurrent.CompletableFuture<String> getAsync(String urlStr, String apiKey, String headerName) {
+    public CompletableFuture<String> getAsync(String endpoint, String urlStr, String apiKey, String headerName) {
+        return getAsync(endpoint, urlStr, apiKey, headerName, timeoutPorDefecto);
+    }
+
+    /**
+     * Realiza una solicitud GET asíncrona con un tiempo máximo de respuesta propio del endpoint
+     * @param timeout Tiempo máximo de respuesta de cada intento
+     * @see #getAsync(String, String, String, String)
+     */
+    public CompletableFuture<String> getAsync(String endpoint, String urlStr, String apiKey, String headerName,
+                                              Duration timeout) {
+        return getAsync(endpoint, urlStr, apiKey, headerName, timeout, LECTOR_TEXTO);
+    }
+
+    /**
+     * Realiza una solicitud GET asíncrona y entrega el cuerpo, ya descomprimido, al lector
+     * a medida que llega. Si ya hay una solicitud en curso para la misma URL, credenciales y
+     * lector, se reutiliza su resultado: el lector se compara por identidad, por lo que
+     * conviene pasar una constante, y el resultado compartido debe ser inmutable
+     * @param endpoint Nombre del endpoint para las métricas (ej. "latest"); no debe contener claves ni parámetros
+     * @param urlStr URL a la cual realizar la solicitud
+     * @param apiKey Clave de API si es necesaria (puede ser null)
+     * @param headerName Nombre del encabezado para la API key
+     * @param timeout Tiempo máximo de respuesta de cada intento
+     * @param lector Extrae el resultado del cuerpo de una respuesta exitosa
+     * @return CompletableFuture con lo que devuelva el lector
+     */
+    public <T> CompletableFuture<T> getAsync(String endpoint, String urlStr, String apiKey, String headerName,
+                                             Duration timeout, LectorRespuesta<T> lector) {
+        ClaveSolicitud clave = new ClaveSolicitud(urlStr, headerName, apiKey, lector);
+        CompletableFuture<T> nueva = new CompletableFuture<>();
+        // El mismo lector produce siempre el mismo tipo de resultado
+        @SuppressWarnings("unchecked")
+        CompletableFuture<T> existente = (CompletableFuture<T>) solicitudesEnCurso.putIfAbsent(clave, nueva);
+        if (existente != null) {
+            // Cada llamador recibe su propia copia para que no pueda completar ni cancelar la compartida
+            return existente.copy();
+        }
+
+        try {
+            enviar(endpoint, urlStr, apiKey, headerName, timeout, lector).whenComplete((respuesta, error) -> {
+                solicitudesEnCurso.remove(clave, nueva);
+                if (error != null) {
+                    nueva.completeExceptionally(causaRaiz(error));
+                } else {
+                    nueva.complete(respuesta);
+                }
+            });
+        } catch (RuntimeException e) {
+            solicitudesEnCurso.remove(clave, nueva);
+            nueva.completeExceptionally(e);
+        }
+        return nueva.copy();
+    }
+
+    /**
+     * Construye la solicitud, la envía a través del cortocircuito del host y mide su duración
+     * total, incluidos los reintentos
+     */
+    private <T> CompletableFuture<T> enviar(String endpoint, String urlStr, String apiKey, String headerName,
+                                            Duration timeout, LectorRespuesta<T> lector) {
         HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
                 .uri(URI.create(urlStr))
                 .GET()
                 .header("Accept", "application/json")
-                .timeout(Duration.ofSeconds(30));
-        
+                .header("Accept-Encoding", "gzip")
+                .timeout(timeout);
+
         if (apiKey != null && headerName != null) {
             requestBuilder.header(headerName, apiKey);
         }
-        
+
         HttpRequest request = requestBuilder.build();
-        
-        return cliente.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApply(response -> {
-                    if (response.statusCode() != 200) {
-                        throw new RuntimeException("Error HTTP: " + response.statusCode());
+        CircuitoHost circuito = circuitos.computeIfAbsent(request.uri().getHost(),
+                host -> new CircuitoHost(host, UMBRAL_FALLOS, ESPERA_APERTURA_MILLIS));
+
+        Tags etiquetas = Tags.of("host", request.uri().getHost(), "endpoint", endpoint);
+        Timer.Sample muestra = Timer.start(registro);
+        return enviarConReintentos(request, circuito, lector, etiquetas, 0)
+                .whenComplete((resultado, error) -> muestra.stop(registro.timer("http.cliente.solicitudes",
+                        etiquetas.and("resultado", error == null ? "exito" : "error"))));
+    }
+
+    /**
+     * Envía la solicitud si el circuito lo permite y reintenta los errores transitorios
+     */
+    private <T> CompletableFuture<T> enviarConReintentos(HttpRequest request, CircuitoHost circuito,
+                                                         LectorRespuesta<T> lector, Tags etiquetas, int intento) {
+        if (!circuito.permitirSolicitud()) {
+            return CompletableFuture.failedFuture(
+                    new IOException("Circuito abierto para " + request.uri().getHost()));
+        }
+
+        return cliente.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                .handle((response, error) -> {
+                    if (error == null && response.statusCode() == 200) {
+                        circuito.registrarExito();
+                        return CompletableFuture.supplyAsync(() -> leerCuerpo(response, lector, etiquetas),
+                                ejecutorLectura);
+                    }
+                    if (error == null && esErrorCliente(response.statusCode())) {
+                        // Un error del cliente (4xx) no indica que el host esté caído; el cuerpo explica la causa
+                        circuito.registrarExito();
+                        return CompletableFuture.supplyAsync(() -> leerDetalle(response), ejecutorLectura)
+                                .thenCompose(detalle -> CompletableFuture.<T>failedFuture(
+                                        new ErrorHttpException(response.statusCode(), detalle)));
+                    }
+                    if (response != null) {
+                        descartarCuerpo(response);
+                    }
+
+                    IOException fallo = error != null
+                            ? new IOException("Error de conexión: " + describir(causaRaiz(error)), causaRaiz(error))
+                            : new ErrorHttpException(response.statusCode(), "");
+
+                    if (error != null || esErrorTransitorio(response.statusCode())) {
+                        circuito.registrarFallo();
+                        // Un intento que agotó su tiempo ya consumió el presupuesto completo de la solicitud
+                        boolean agotoTiempo = error != null && causaRaiz(error) instanceof HttpTimeoutException;
+                        if (intento < MAX_REINTENTOS && !agotoTiempo) {
+                            registro.counter("http.cliente.reintentos", etiquetas).increment();
+                            return CompletableFuture.runAsync(() -> { },
+                                            CompletableFuture.delayedExecutor(calcularEspera(intento), TimeUnit.MILLISECONDS))
+                                    .thenCompose(v -> enviarConReintentos(request, circuito, lector, etiquetas, intento + 1));
+                        }
+                    } else {
+                        circuito.registrarExito();
                     }
-                    return response.body();
-                });
+                    return CompletableFuture.<T>failedFuture(fallo);
+                })
+                .thenCompose(resultado -> resultado);
+    }
+
+    /**
+     * Entrega el cuerpo al lector, descomprimiéndolo si el servidor lo envió con gzip. La
+     * lectura se mide aparte para distinguir el tiempo de descarga y análisis del de espera
+     */
+    private <T> T leerCuerpo(HttpResponse<InputStream> response, LectorRespuesta<T> lector, Tags etiquetas) {
+        Timer.Sample muestra = Timer.start(registro);
+        try (InputStream cuerpo = abrirCuerpo(response)) {
+            return lector.leer(cuerpo);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        } finally {
+            muestra.stop(registro.timer("http.cliente.lectura", etiquetas));
+        }
+    }
+
+    /**
+     * Lee el comienzo del cuerpo de un error del cliente para incluirlo en la excepción
+     */
+    private static String leerDetalle(HttpResponse<InputStream> response) {
+        try (InputStream cuerpo = abrirCuerpo(response)) {
+            return new String(cuerpo.readNBytes(MAX_BYTES_DETALLE), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static InputStream abrirCuerpo(HttpResponse<InputStream> response) throws IOException {
+        boolean comprimido = response.headers().firstValue("Content-Encoding")
+                .map(codificacion -> codificacion.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        return comprimido ? new GZIPInputStream(response.body()) : response.body();
+    }
+
+    /**
+     * Cierra el cuerpo de una respuesta fallida para liberar la conexión
+     */
+    private static void descartarCuerpo(HttpResponse<InputStream> response) {
+        try {
+            response.body().close();
+        } catch (IOException e) {
+            // La respuesta ya se descarta; no hay nada más que hacer
+        }
+    }
+
+    /**
+     * Mensaje legible de un error; algunas excepciones de red (ConnectException) no traen mensaje
+     */
+    private static String describir(Throwable error) {
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+    }
+
+    /**
+     * Espera exponencial con jitter completo: un valor aleatorio entre 0 y base * 2^intento
+     */
+    private static long calcularEspera(int intento) {
+        long tope = ESPERA_BASE_MILLIS << intento;
+        return ThreadLocalRandom.current().nextLong(tope + 1);
+    }
+
+    private static boolean esErrorTransitorio(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
+
+    private static boolean esErrorCliente(int statusCode) {
+        return statusCode >= 400 && statusCode < 500 && statusCode != 429;
+    }
+
+    private static Throwable causaRaiz(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Identifica solicitudes idénticas: URL, credenciales y el mismo lector
+     */
+    private static final class ClaveSolicitud {
+        private final String url;
+        private final String headerName;
+        private final String apiKey;
+        private final LectorRespuesta<?> lector;
+
+        private ClaveSolicitud(String url, String headerName, String apiKey, LectorRespuesta<?> lector) {
+            this.url = url;
+            this.headerName = headerName;
+            this.apiKey = apiKey;
+            this.lector = lector;
+        }
+
+        @Override
+        public boolean equals(Object otro) {
+            if (!(otro instanceof ClaveSolicitud)) {
+                return false;
+            }
+            ClaveSolicitud clave = (ClaveSolicitud) otro;
+            return url.equals(clave.url) && Objects.equals(headerName, clave.headerName)
+                    && Objects.equals(apiKey, clave.apiKey) && lector == clave.lector;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, headerName, apiKey) * 31 + System.identityHashCode(lector);
+        }
+    }
+
+    /**
+     * Extrae el resultado de un cuerpo de respuesta a medida que se recibe
+     */
+    @FunctionalInterface
+    public interface LectorRespuesta<T> {
+        T leer(InputStream cuerpo) throws IOException;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package com.conversor.http;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuración del cliente HTTP compartido por todos los clientes de APIs externas. Un
+ * único HttpClient mantiene un solo pool de conexiones por host (con multiplexación HTTP/2)
+ * y un ejecutor de tamaño fijo, de modo que los handshakes TLS y el número de hilos no
+ * crecen con la carga.
+ */
+@Configuration
+public class ConfiguracionHttp {
+
+    @Bean(destroyMethod = "cerrar")
+    public ClienteHttpRequest clienteHttpRequest(
+            @Value("${http.cliente.hilos:4}") int hilos,
+            @Value("${http.cliente.timeout-conexion-millis:10000}") long timeoutConexionMillis,
+            @Value("${http.cliente.timeout-millis:30000}") long timeoutMillis,
+            MeterRegistry meterRegistry) {
+        return new ClienteHttpRequest(hilos, Duration.ofMillis(timeoutConexionMillis), Duration.ofMillis(timeoutMillis),
+                meterRegistry);
+    }
+}
@@ -0,0 +1,31 @@
+package com.conversor.http;
+
+import java.io.IOException;
+
+/**
+ * Respuesta HTTP con un código de estado distinto de 200. Conserva el código y, para los
+ * errores del cliente (4xx), el comienzo del cuerpo, de modo que quien llama pueda
+ * distinguir la causa (por ejemplo, un parámetro inválido) sin volver a consultar.
+ */
+public class ErrorHttpException extends IOException {
+
+    private final int codigoEstado;
+    private final String detalle;
+
+    public ErrorHttpException(int codigoEstado, String detalle) {
+        super("Error HTTP: " + codigoEstado + (detalle.isEmpty() ? "" : " - " + detalle));
+        this.codigoEstado = codigoEstado;
+        this.detalle = detalle;
+    }
+
+    public int getCodigoEstado() {
+        return codigoEstado;
+    }
+
+    /**
+     * @return Comienzo del cuerpo de la respuesta, o cadena vacía si no se leyó
+     */
+    public String getDetalle() {
+        return detalle;
+    }
+}
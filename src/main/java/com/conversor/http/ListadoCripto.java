@@ -0,0 +1,137 @@
+package com.conversor.http;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Listado de cryptocurrency/listings/latest reducido al símbolo y al precio de cada
+ * criptomoneda. Se lee en streaming: de cada elemento de "data" solo se conservan
+ * symbol y quote.{moneda}.price, en el mismo orden del listado, y el resto se omite.
+ */
+public final class ListadoCripto {
+
+    private static final int CAPACIDAD_INICIAL = 128;
+
+    private final String[] simbolos;
+    private final double[] precios;
+
+    private ListadoCripto(String[] simbolos, double[] precios) {
+        this.simbolos = simbolos;
+        this.precios = precios;
+    }
+
+    /**
+     * Lee el listado. Las criptomonedas sin precio en la moneda de cotización se descartan
+     * @param cuerpo Cuerpo JSON de la respuesta
+     * @param monedaCotizacion Moneda de la cotización que se extrae (ej. USD)
+     * @throws IOException Si la respuesta no es válida o no contiene "data"
+     */
+    static ListadoCripto leer(InputStream cuerpo, String monedaCotizacion) throws IOException {
+        String[] simbolos = null;
+        double[] precios = null;
+        int cantidad = 0;
+
+        try (JsonReader lector = new JsonReader(new InputStreamReader(cuerpo, StandardCharsets.UTF_8))) {
+            lector.beginObject();
+            while (lector.hasNext()) {
+                if (!"data".equals(lector.nextName())) {
+                    lector.skipValue();
+                    continue;
+                }
+                simbolos = new String[CAPACIDAD_INICIAL];
+                precios = new double[CAPACIDAD_INICIAL];
+                lector.beginArray();
+                while (lector.hasNext()) {
+                    if (cantidad == simbolos.length) {
+                        simbolos = Arrays.copyOf(simbolos, cantidad * 2);
+                        precios = Arrays.copyOf(precios, cantidad * 2);
+                    }
+                    if (leerElemento(lector, monedaCotizacion, simbolos, precios, cantidad)) {
+                        cantidad++;
+                    }
+                }
+                lector.endArray();
+            }
+            lector.endObject();
+        } catch (IllegalStateException | NumberFormatException | JsonParseException e) {
+            throw new IOException("Listado de criptomonedas con formato inesperado: " + e.getMessage(), e);
+        }
+
+        if (simbolos == null) {
+            throw new IOException("El listado de criptomonedas no contiene datos");
+        }
+        return new ListadoCripto(Arrays.copyOf(simbolos, cantidad), Arrays.copyOf(precios, cantidad));
+    }
+
+    /**
+     * Lee un elemento de "data" y lo guarda en la posición indicada si trae símbolo y precio
+     */
+    private static boolean leerElemento(JsonReader lector, String monedaCotizacion,
+                                        String[] simbolos, double[] precios, int posicion) throws IOException {
+        String simbolo = null;
+        double precio = Double.NaN;
+        lector.beginObject();
+        while (lector.hasNext()) {
+            String nombre = lector.nextName();
+            if ("symbol".equals(nombre) && lector.peek() == JsonToken.STRING) {
+                simbolo = lector.nextString();
+            } else if ("quote".equals(nombre) && lector.peek() == JsonToken.BEGIN_OBJECT) {
+                precio = leerPrecio(lector, monedaCotizacion);
+            } else {
+                lector.skipValue();
+            }
+        }
+        lector.endObject();
+
+        if (simbolo == null || Double.isNaN(precio)) {
+            return false;
+        }
+        simbolos[posicion] = simbolo;
+        precios[posicion] = precio;
+        return true;
+    }
+
+    /**
+     * Lee quote.{moneda}.price; devuelve NaN si no viene o es null
+     */
+    private static double leerPrecio(JsonReader lector, String monedaCotizacion) throws IOException {
+        double precio = Double.NaN;
+        lector.beginObject();
+        while (lector.hasNext()) {
+            if (!monedaCotizacion.equals(lector.nextName()) || lector.peek() != JsonToken.BEGIN_OBJECT) {
+                lector.skipValue();
+                continue;
+            }
+            lector.beginObject();
+            while (lector.hasNext()) {
+                if ("price".equals(lector.nextName()) && lector.peek() == JsonToken.NUMBER) {
+                    precio = lector.nextDouble();
+                } else {
+                    lector.skipValue();
+                }
+            }
+            lector.endObject();
+        }
+        lector.endObject();
+        return precio;
+    }
+
+    public int tamano() {
+        return simbolos.length;
+    }
+
+    public String simbolo(int i) {
+        return simbolos[i];
+    }
+
+    public double precio(int i) {
+        return precios[i];
+    }
+}
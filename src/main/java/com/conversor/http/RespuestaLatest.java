@@ -0,0 +1,111 @@
+package com.conversor.http;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Respuesta del endpoint latest de ExchangeRate-API reducida a los campos que se usan.
+ * Se lee en streaming: las tasas pasan directamente a arreglos primitivos sin construir
+ * el árbol JSON de la respuesta.
+ */
+public final class RespuestaLatest {
+
+    private static final int CAPACIDAD_INICIAL = 192;
+
+    private final String[] codigos;
+    private final double[] tasas;
+    private final long actualizadoUnix;
+    private final long proximaActualizacionUnix;
+
+    private RespuestaLatest(String[] codigos, double[] tasas, long actualizadoUnix, long proximaActualizacionUnix) {
+        this.codigos = codigos;
+        this.tasas = tasas;
+        this.actualizadoUnix = actualizadoUnix;
+        this.proximaActualizacionUnix = proximaActualizacionUnix;
+    }
+
+    /**
+     * Lee la respuesta extrayendo conversion_rates y las marcas de tiempo; el resto se omite
+     * @param cuerpo Cuerpo JSON de la respuesta
+     * @throws IOException Si la respuesta no es válida o no contiene conversion_rates
+     */
+    static RespuestaLatest leer(InputStream cuerpo) throws IOException {
+        String[] codigos = null;
+        double[] tasas = null;
+        int cantidad = 0;
+        long actualizado = 0L;
+        long proxima = 0L;
+
+        try (JsonReader lector = new JsonReader(new InputStreamReader(cuerpo, StandardCharsets.UTF_8))) {
+            lector.beginObject();
+            while (lector.hasNext()) {
+                switch (lector.nextName()) {
+                    case "time_last_update_unix":
+                        actualizado = lector.nextLong();
+                        break;
+                    case "time_next_update_unix":
+                        proxima = lector.nextLong();
+                        break;
+                    case "conversion_rates":
+                        codigos = new String[CAPACIDAD_INICIAL];
+                        tasas = new double[CAPACIDAD_INICIAL];
+                        lector.beginObject();
+                        while (lector.hasNext()) {
+                            if (cantidad == codigos.length) {
+                                codigos = Arrays.copyOf(codigos, cantidad * 2);
+                                tasas = Arrays.copyOf(tasas, cantidad * 2);
+                            }
+                            codigos[cantidad] = lector.nextName();
+                            tasas[cantidad] = lector.nextDouble();
+                            cantidad++;
+                        }
+                        lector.endObject();
+                        break;
+                    default:
+                        lector.skipValue();
+                }
+            }
+            lector.endObject();
+        } catch (IllegalStateException | NumberFormatException | JsonParseException e) {
+            throw new IOException("Respuesta de tasas con formato inesperado: " + e.getMessage(), e);
+        }
+
+        if (codigos == null) {
+            throw new IOException("Error al obtener tasas: respuesta incompleta");
+        }
+        return new RespuestaLatest(Arrays.copyOf(codigos, cantidad), Arrays.copyOf(tasas, cantidad),
+                actualizado, proxima);
+    }
+
+    public int tamano() {
+        return codigos.length;
+    }
+
+    public String codigo(int i) {
+        return codigos[i];
+    }
+
+    public double tasa(int i) {
+        return tasas[i];
+    }
+
+    public List<String> getCodigos() {
+        return Collections.unmodifiableList(Arrays.asList(codigos));
+    }
+
+    public long getActualizadoUnix() {
+        return actualizadoUnix;
+    }
+
+    public long getProximaActualizacionUnix() {
+        return proximaActualizacionUnix;
+    }
+}
@@ -0,0 +1,121 @@
+package com.conversor.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Agregado OHLC (apertura, máximo, mínimo, cierre y cantidad de observaciones) de la tasa
+ * de un par de monedas dentro de un intervalo de tiempo
+ */
+@Entity
+@Table(name = "agregados_tasas", uniqueConstraints = @UniqueConstraint(
+        name = "uk_agregado_par_granularidad_inicio",
+        columnNames = {"monedaOrigen", "monedaDestino", "granularidad", "inicio"}))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgregadoTasa {
+
+    public static final String SECUENCIA = "agregados_tasas_seq";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SECUENCIA)
+    @SequenceGenerator(name = SECUENCIA, sequenceName = SECUENCIA, allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private String monedaOrigen;
+
+    @Column(nullable = false)
+    private String monedaDestino;
+
+    @Column(nullable = false, length = 10)
+    private String granularidad; // HORA o DIA
+
+    @Column(nullable = false)
+    private LocalDateTime inicio;
+
+    @Column(nullable = false)
+    private Double apertura;
+
+    @Column(nullable = false)
+    private Double maximo;
+
+    @Column(nullable = false)
+    private Double minimo;
+
+    @Column(nullable = false)
+    private Double cierre;
+
+    @Column(nullable = false)
+    private Long conteo;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaApertura;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaCierre;
+
+    /**
+     * Incorpora una observación de la tasa al agregado. La apertura y el cierre se deciden
+     * por fecha, de modo que el resultado no depende del orden de llegada
+     * @param tasa Tasa observada
+     * @param fecha Momento de la observación
+     */
+    public void incorporar(double tasa, LocalDateTime fecha) {
+        if (fecha.isBefore(fechaApertura)) {
+            apertura = tasa;
+            fechaApertura = fecha;
+        }
+        if (!fecha.isBefore(fechaCierre)) {
+            cierre = tasa;
+            fechaCierre = fecha;
+        }
+        maximo = Math.max(maximo, tasa);
+        minimo = Math.min(minimo, tasa);
+        conteo++;
+    }
+
+    /**
+     * Combina otro agregado del mismo par e intervalo en este
+     */
+    public void combinar(AgregadoTasa otro) {
+        if (otro.fechaApertura.isBefore(fechaApertura)) {
+            apertura = otro.apertura;
+            fechaApertura = otro.fechaApertura;
+        }
+        if (!otro.fechaCierre.isBefore(fechaCierre)) {
+            cierre = otro.cierre;
+            fechaCierre = otro.fechaCierre;
+        }
+        maximo = Math.max(maximo, otro.maximo);
+        minimo = Math.min(minimo, otro.minimo);
+        conteo += otro.conteo;
+    }
+
+    /**
+     * Crea un agregado a partir de una primera observación
+     */
+    public static AgregadoTasa nuevo(String monedaOrigen, String monedaDestino, Granularidad granularidad,
+                                     double tasa, LocalDateTime fecha) {
+        return AgregadoTasa.builder()
+                .monedaOrigen(monedaOrigen)
+                .monedaDestino(monedaDestino)
+                .granularidad(granularidad.name())
+                .inicio(granularidad.inicioDe(fecha))
+                .apertura(tasa)
+                .maximo(tasa)
+                .minimo(tasa)
+                .cierre(tasa)
+                .conteo(1L)
+                .fechaApertura(fecha)
+                .fechaCierre(fecha)
+                .build();
+    }
+}
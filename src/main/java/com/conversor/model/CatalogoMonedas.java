@@ -0,0 +1,73 @@
+package com.conversor.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.util.DigestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catálogo inmutable de monedas soportadas, ordenado por nombre. Se construye una vez
+ * por cada carga del catálogo junto con su JSON ya serializado y la versión de ese JSON,
+ * de modo que las páginas y /api/monedas solo leen estructuras ya calculadas.
+ */
+public final class CatalogoMonedas {
+
+    private final Map<String, String> monedas;
+    private final byte[] json;
+    private final VersionDatos version;
+
+    private CatalogoMonedas(Map<String, String> monedas, byte[] json) {
+        this.monedas = monedas;
+        this.json = json;
+        this.version = new VersionDatos(DigestUtils.md5DigestAsHex(json), System.currentTimeMillis());
+    }
+
+    /**
+     * Ordena las monedas por nombre sin distinguir mayúsculas y serializa el resultado
+     * @param nombresPorCodigo Nombre de cada moneda indexado por su código
+     * @param objectMapper Serializador con el que se genera el JSON del catálogo
+     * @throws JsonProcessingException Si el catálogo no puede serializarse
+     */
+    public static CatalogoMonedas de(Map<String, String> nombresPorCodigo, ObjectMapper objectMapper)
+            throws JsonProcessingException {
+        List<Map.Entry<String, String>> entradas = new ArrayList<>(nombresPorCodigo.entrySet());
+        entradas.sort(Map.Entry.<String, String>comparingByValue(String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(Map.Entry.comparingByKey()));
+
+        Map<String, String> ordenadas = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entrada : entradas) {
+            ordenadas.put(entrada.getKey(), entrada.getValue());
+        }
+        return new CatalogoMonedas(Collections.unmodifiableMap(ordenadas), objectMapper.writeValueAsBytes(ordenadas));
+    }
+
+    /**
+     * @return Mapa de solo lectura con código y nombre de las monedas, ordenado por nombre
+     */
+    public Map<String, String> getMonedas() {
+        return monedas;
+    }
+
+    /**
+     * @return JSON del catálogo en UTF-8; el arreglo se comparte entre solicitudes y no debe modificarse
+     */
+    public byte[] getJson() {
+        return json;
+    }
+
+    /**
+     * @return Versión del catálogo: el hash de su JSON y el momento en que se cargó
+     */
+    public VersionDatos getVersion() {
+        return version;
+    }
+
+    public boolean estaVacio() {
+        return monedas.isEmpty();
+    }
+}
@@ -0,0 +1,62 @@
+package com.conversor.model;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Cursor de paginación por clave del historial: identifica la última conversión de una
+ * página mediante su fecha y su ID. Se representa como texto "fechaHora_id" para poder
+ * enviarlo y recibirlo en la API.
+ */
+public final class CursorHistorial {
+
+    private static final char SEPARADOR = '_';
+
+    private final LocalDateTime fechaHora;
+    private final Long id;
+
+    public CursorHistorial(LocalDateTime fechaHora, Long id) {
+        this.fechaHora = fechaHora;
+        this.id = id;
+    }
+
+    /**
+     * Construye el cursor que apunta a una conversión
+     */
+    public static CursorHistorial de(HistorialConversion conversion) {
+        return new CursorHistorial(conversion.getFechaHora(), conversion.getId());
+    }
+
+    /**
+     * Interpreta un cursor en formato "fechaHora_id"
+     * @param texto Cursor recibido en la solicitud
+     * @return Cursor interpretado
+     * @throws IllegalArgumentException Si el texto no tiene el formato esperado
+     */
+    public static CursorHistorial parse(String texto) {
+        int separador = texto.lastIndexOf(SEPARADOR);
+        if (separador <= 0) {
+            throw new IllegalArgumentException("Cursor inválido: " + texto);
+        }
+        try {
+            return new CursorHistorial(
+                    LocalDateTime.parse(texto.substring(0, separador)),
+                    Long.parseLong(texto.substring(separador + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + texto, e);
+        }
+    }
+
+    public LocalDateTime getFechaHora() {
+        return fechaHora;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return fechaHora.toString() + SEPARADOR + id;
+    }
+}
@@ -0,0 +1,39 @@
+package com.conversor.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Tamaño de los intervalos en los que se agregan las tasas de cambio
+ */
+public enum Granularidad {
+    /**
+     * Intervalos de una hora
+     */
+    HORA(ChronoUnit.HOURS),
+    
+    /**
+     * Intervalos de un día
+     */
+    DIA(ChronoUnit.DAYS);
+
+    private final ChronoUnit unidad;
+
+    Granularidad(ChronoUnit unidad) {
+        this.unidad = unidad;
+    }
+
+    /**
+     * Obtiene el inicio del intervalo que contiene una fecha
+     */
+    public LocalDateTime inicioDe(LocalDateTime fecha) {
+        return fecha.truncatedTo(unidad);
+    }
+
+    /**
+     * Obtiene el inicio del intervalo siguiente a uno dado
+     */
+    public LocalDateTime siguiente(LocalDateTime inicio) {
+        return inicio.plus(1, unidad);
+    }
+}
@@ -9,15 +9,25 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "historial_conversiones")
+@Table(name = "historial_conversiones", indexes = {
+        @Index(name = "idx_historial_par_fecha", columnList = "monedaOrigen, monedaDestino, fechaHora"),
+        @Index(name = "idx_historial_tipo_fecha_id", columnList = "tipoConversion, fechaHora, id"),
+        @Index(name = "idx_historial_fecha", columnList = "fechaHora")
+})
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class HistorialConversion {
 
+    public static final String SECUENCIA = "historial_conversiones_seq";
+    public static final int TAMANO_ASIGNACION = 50;
+
+    // Secuencia con optimizador pooled: a diferencia de IDENTITY permite que Hibernate
+    // agrupe los INSERT en lotes JDBC, reservando los IDs de TAMANO_ASIGNACION en TAMANO_ASIGNACION
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SECUENCIA)
+    @SequenceGenerator(name = SECUENCIA, sequenceName = SECUENCIA, allocationSize = TAMANO_ASIGNACION)
     private Long id;
 
     @Column(nullable = false)
@@ -0,0 +1,99 @@
+package com.conversor.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Índice inmutable que asigna a cada código ISO 4217 una posición compacta (ordinal).
+ * Los códigos de tres letras se codifican directamente como un número en base 26,
+ * por lo que resolver un ordinal es una carga de arreglo sin hashing de cadenas.
+ */
+public final class IndiceMonedas {
+
+    private static final int LETRAS = 26;
+    private static final int TAMANO_TABLA = LETRAS * LETRAS * LETRAS;
+
+    private final String[] codigos;
+    private final short[] ordinales;
+
+    private IndiceMonedas(String[] codigos) {
+        this.codigos = codigos;
+        this.ordinales = new short[TAMANO_TABLA];
+        Arrays.fill(this.ordinales, (short) -1);
+        for (int i = 0; i < codigos.length; i++) {
+            int clave = clave(codigos[i]);
+            if (clave < 0) {
+                throw new IllegalArgumentException("Código de moneda inválido: " + codigos[i]);
+            }
+            this.ordinales[clave] = (short) i;
+        }
+    }
+
+    /**
+     * Construye un índice a partir de un conjunto de códigos. Los códigos se ordenan
+     * alfabéticamente para que el mismo conjunto produzca siempre los mismos ordinales.
+     * @param codigos Códigos ISO de tres letras en mayúsculas
+     * @return Índice de monedas
+     */
+    public static IndiceMonedas de(Collection<String> codigos) {
+        String[] ordenados = codigos.stream().distinct().sorted().toArray(String[]::new);
+        if (ordenados.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Demasiadas monedas para el índice: " + ordenados.length);
+        }
+        return new IndiceMonedas(ordenados);
+    }
+
+    /**
+     * Obtiene el ordinal de una moneda
+     * @param codigo Código de la moneda (ej. USD)
+     * @return Posición de la moneda en el índice, o -1 si no existe
+     */
+    public int ordinal(String codigo) {
+        int clave = clave(codigo);
+        return clave < 0 ? -1 : ordinales[clave];
+    }
+
+    /**
+     * Obtiene el código de la moneda ubicada en un ordinal
+     */
+    public String codigo(int ordinal) {
+        return codigos[ordinal];
+    }
+
+    /**
+     * Indica si el índice contiene todos los códigos indicados
+     */
+    public boolean contieneTodos(Collection<String> otros) {
+        for (String codigo : otros) {
+            if (ordinal(codigo) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int tamano() {
+        return codigos.length;
+    }
+
+    public List<String> getCodigos() {
+        return Arrays.asList(codigos.clone());
+    }
+
+    /**
+     * Codifica un código de tres letras mayúsculas como número en base 26
+     */
+    private static int clave(String codigo) {
+        if (codigo == null || codigo.length() != 3) {
+            return -1;
+        }
+        int a = codigo.charAt(0) - 'A';
+        int b = codigo.charAt(1) - 'A';
+        int c = codigo.charAt(2) - 'A';
+        if ((a | b | c) < 0 || a >= LETRAS || b >= LETRAS || c >= LETRAS) {
+            return -1;
+        }
+        return (a * LETRAS + b) * LETRAS + c;
+    }
+}
@@ -0,0 +1,32 @@
+package com.conversor.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Resultado de un elemento de una conversión por lotes. Si el elemento no pudo
+ * convertirse, solo se informan las monedas solicitadas y el error.
+ */
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResultadoConversion {
+
+    private String monedaOrigen;
+    private String monedaDestino;
+    private Double cantidadOrigen;
+    private Double cantidadDestino;
+    private Double tasaCambio;
+    private String error;
+
+    public static ResultadoConversion exito(String monedaOrigen, String monedaDestino,
+                                            double cantidadOrigen, double cantidadDestino, double tasaCambio) {
+        return new ResultadoConversion(monedaOrigen, monedaDestino, cantidadOrigen, cantidadDestino, tasaCambio, null);
+    }
+
+    public static ResultadoConversion error(String monedaOrigen, String monedaDestino, Double cantidadOrigen,
+                                            String error) {
+        return new ResultadoConversion(monedaOrigen, monedaDestino, cantidadOrigen, null, null, error);
+    }
+}
@@ -0,0 +1,162 @@
+package com.conversor.model;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Instantánea inmutable de las tasas de cambio obtenidas del endpoint latest
+ * para una moneda base. Las tasas se guardan en arreglos primitivos indexados por
+ * el ordinal de {@link IndiceMonedas}, de modo que una tasa cruzada
+ * (origen -> base -> destino) se resuelve con dos cargas de arreglo y una multiplicación.
+ */
+public final class SnapshotTasas {
+
+    private final String monedaBase;
+    private final IndiceMonedas indice;
+    private final double[] tasas;
+    private final double[] inversas;
+    private final long actualizadoUnix;
+    private final long proximaActualizacionUnix;
+    private final Instant obtenidoEn;
+    private final String version;
+
+    /**
+     * @param monedaBase Moneda base de las tasas
+     * @param indice Índice de monedas que define la posición de cada tasa
+     * @param tasas Unidades de cada moneda por unidad de la moneda base (NaN si no hay tasa)
+     * @param actualizadoUnix Momento de la última actualización según la API
+     * @param proximaActualizacionUnix Momento de la próxima actualización según la API
+     */
+    public SnapshotTasas(String monedaBase, IndiceMonedas indice, double[] tasas,
+                         long actualizadoUnix, long proximaActualizacionUnix) {
+        if (tasas.length != indice.tamano()) {
+            throw new IllegalArgumentException("El arreglo de tasas no coincide con el índice de monedas");
+        }
+        this.monedaBase = monedaBase;
+        this.indice = indice;
+        this.tasas = tasas.clone();
+        this.inversas = new double[tasas.length];
+        for (int i = 0; i < tasas.length; i++) {
+            this.inversas[i] = 1.0 / tasas[i];
+        }
+        this.actualizadoUnix = actualizadoUnix;
+        this.proximaActualizacionUnix = proximaActualizacionUnix;
+        this.obtenidoEn = Instant.now();
+        // Identifica el contenido de la instantánea; se calcula una vez para construir ETags
+        this.version = Long.toHexString(actualizadoUnix) + '-' + Integer.toHexString(Arrays.hashCode(this.tasas));
+    }
+
+    /**
+     * Indica si la moneda está incluida en la instantánea
+     * @param codigo Código de la moneda (ej. USD, EUR)
+     * @return true si existe una tasa para la moneda
+     */
+    public boolean contiene(String codigo) {
+        int ordinal = indice.ordinal(codigo);
+        return ordinal >= 0 && !Double.isNaN(tasas[ordinal]);
+    }
+
+    /**
+     * Calcula la tasa cruzada entre dos monedas usando la moneda base como puente
+     * @param monedaOrigen Código de la moneda de origen
+     * @param monedaDestino Código de la moneda de destino
+     * @return Unidades de la moneda destino por cada unidad de la moneda origen
+     * @throws IllegalArgumentException Si alguna de las monedas no está en la instantánea
+     */
+    public double tasaCruzada(String monedaOrigen, String monedaDestino) {
+        return tasaCruzada(ordinalSoportado(monedaOrigen), ordinalSoportado(monedaDestino));
+    }
+
+    /**
+     * Calcula la tasa cruzada entre dos ordinales del índice
+     */
+    public double tasaCruzada(int ordinalOrigen, int ordinalDestino) {
+        return tasas[ordinalDestino] * inversas[ordinalOrigen];
+    }
+
+    /**
+     * Convierte una cantidad de una moneda a todas las monedas del índice en un único
+     * recorrido del arreglo de tasas
+     * @param ordinalOrigen Ordinal de la moneda de origen
+     * @param cantidad Cantidad a convertir
+     * @return Cantidad en cada moneda, indexada por ordinal (NaN si no hay tasa)
+     */
+    public double[] convertirATodas(int ordinalOrigen, double cantidad) {
+        double factor = cantidad * inversas[ordinalOrigen];
+        double[] resultado = new double[tasas.length];
+        for (int i = 0; i < tasas.length; i++) {
+            resultado[i] = tasas[i] * factor;
+        }
+        return resultado;
+    }
+
+    /**
+     * Obtiene el ordinal de una moneda, validando que tenga tasa en la instantánea
+     * @throws IllegalArgumentException Si la moneda no está soportada
+     */
+    public int ordinalSoportado(String codigo) {
+        int ordinal = indice.ordinal(codigo);
+        if (ordinal < 0 || Double.isNaN(tasas[ordinal])) {
+            throw new IllegalArgumentException("Moneda no soportada: " + codigo);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Indica si la instantánea ya superó la hora de próxima actualización anunciada por la API
+     */
+    public boolean estaVencida() {
+        return proximaActualizacionUnix > 0 && Instant.now().getEpochSecond() >= proximaActualizacionUnix;
+    }
+
+    /**
+     * Indica si la instantánea debe considerarse obsoleta: la API anunció una actualización
+     * hace más de la tolerancia indicada y todavía no se ha publicado una nueva
+     * @param toleranciaSegundos Segundos de gracia tras la próxima actualización anunciada
+     */
+    public boolean estaObsoleta(long toleranciaSegundos) {
+        return proximaActualizacionUnix > 0
+                && Instant.now().getEpochSecond() >= proximaActualizacionUnix + toleranciaSegundos;
+    }
+
+    /**
+     * Segundos transcurridos desde que se obtuvo la instantánea
+     */
+    public long antiguedadSegundos() {
+        return Instant.now().getEpochSecond() - obtenidoEn.getEpochSecond();
+    }
+
+    public String getMonedaBase() {
+        return monedaBase;
+    }
+
+    public IndiceMonedas getIndice() {
+        return indice;
+    }
+
+    /**
+     * Tasa de una moneda respecto a la moneda base
+     */
+    public double tasa(int ordinal) {
+        return tasas[ordinal];
+    }
+
+    public long getActualizadoUnix() {
+        return actualizadoUnix;
+    }
+
+    public long getProximaActualizacionUnix() {
+        return proximaActualizacionUnix;
+    }
+
+    public Instant getObtenidoEn() {
+        return obtenidoEn;
+    }
+
+    /**
+     * Versión de la instantánea: cambia si cambian las tasas o su marca de tiempo
+     */
+    public String getVersion() {
+        return version;
+    }
+}
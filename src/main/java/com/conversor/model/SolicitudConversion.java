@@ -0,0 +1,25 @@
+package com.conversor.model;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Elemento de una solicitud de conversión por lotes. Acepta también los nombres
+ * "from", "to" y "amount" usados por los clientes externos.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SolicitudConversion {
+
+    @JsonAlias("from")
+    private String monedaOrigen;
+
+    @JsonAlias("to")
+    private String monedaDestino;
+
+    @JsonAlias("amount")
+    private Double cantidad;
+}
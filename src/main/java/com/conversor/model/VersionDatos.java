@@ -0,0 +1,60 @@
+package com.conversor.model;
+
+import java.util.Objects;
+
+/**
+ * Versión de los datos a partir de los que se construye una respuesta: la instantánea de
+ * tasas, la marca de agua del historial o ambas. Con ella se generan el ETag y el
+ * Last-Modified, de modo que una solicitud condicional puede responderse con 304 sin
+ * recalcular la respuesta.
+ */
+public final class VersionDatos {
+
+    private final String version;
+    private final long ultimaModificacionMillis;
+
+    /**
+     * @param version Identificador del contenido de los datos
+     * @param ultimaModificacionMillis Momento de la última modificación de los datos
+     */
+    public VersionDatos(String version, long ultimaModificacionMillis) {
+        this.version = version;
+        this.ultimaModificacionMillis = ultimaModificacionMillis;
+    }
+
+    /**
+     * Versión de la instantánea de tasas; sin instantánea publicada se usa "0"
+     */
+    public static VersionDatos de(SnapshotTasas snapshot) {
+        return snapshot == null
+                ? new VersionDatos("0", 0L)
+                : new VersionDatos(snapshot.getVersion(), snapshot.getActualizadoUnix() * 1000);
+    }
+
+    /**
+     * Combina dos versiones: el resultado cambia si cambia cualquiera de ellas
+     */
+    public VersionDatos y(VersionDatos otra) {
+        return new VersionDatos(version + '-' + otra.version,
+                Math.max(ultimaModificacionMillis, otra.ultimaModificacionMillis));
+    }
+
+    /**
+     * Distingue las respuestas construidas con los mismos datos pero distintos parámetros
+     */
+    public VersionDatos conParametros(Object... parametros) {
+        return new VersionDatos(version + '-' + Integer.toHexString(Objects.hash(parametros)),
+                ultimaModificacionMillis);
+    }
+
+    /**
+     * @return ETag fuerte con la versión entre comillas
+     */
+    public String getEtag() {
+        return "\"" + version + "\"";
+    }
+
+    public long getUltimaModificacionMillis() {
+        return ultimaModificacionMillis;
+    }
+}
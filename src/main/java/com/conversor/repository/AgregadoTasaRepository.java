@@ -0,0 +1,40 @@
+package com.conversor.repository;
+
+import com.conversor.model.AgregadoTasa;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AgregadoTasaRepository extends JpaRepository<AgregadoTasa, Long> {
+    
+    /**
+     * Busca en una sola consulta los agregados de varios pares e intervalos. Devuelve todas
+     * las combinaciones de las monedas e inicios indicados, que el llamador filtra
+     * @param origenes Códigos de las monedas de origen
+     * @param destinos Códigos de las monedas de destino
+     * @param inicios Inicios de los intervalos
+     * @return Agregados existentes para esas combinaciones
+     */
+    @Query("SELECT a FROM AgregadoTasa a WHERE a.monedaOrigen IN :origenes "
+            + "AND a.monedaDestino IN :destinos AND a.inicio IN :inicios")
+    List<AgregadoTasa> buscarIntervalos(@Param("origenes") Collection<String> origenes,
+                                        @Param("destinos") Collection<String> destinos,
+                                        @Param("inicios") Collection<LocalDateTime> inicios);
+    
+    /**
+     * Obtiene los agregados de un par desde una fecha, en orden cronológico
+     * @param monedaOrigen Código de la moneda de origen
+     * @param monedaDestino Código de la moneda de destino
+     * @param granularidad Granularidad de los intervalos ("HORA" o "DIA")
+     * @param desde Inicio del primer intervalo a incluir
+     * @return Lista de agregados del par
+     */
+    List<AgregadoTasa> findByMonedaOrigenAndMonedaDestinoAndGranularidadAndInicioGreaterThanEqualOrderByInicioAsc(
+            String monedaOrigen, String monedaDestino, String granularidad, LocalDateTime desde);
+}
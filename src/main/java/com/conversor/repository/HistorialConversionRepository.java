@@ -2,9 +2,19 @@ package com.conversor.repository;
 
 import com.conversor.model.HistorialConversion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface HistorialConversionRepository extends JpaRepository<HistorialConversion, Long> {
@@ -16,19 +26,53 @@ public interface HistorialConversionRepository extends JpaRepository<HistorialCo
     List<HistorialConversion> findTop10ByOrderByFechaHoraDesc();
     
     /**
-     * Encuentra todas las conversiones de un tipo específico ordenadas por fecha descendente
+     * Obtiene la primera página de conversiones de un tipo, de la más reciente a la más antigua
      * @param tipoConversion Tipo de conversión ("MONEDA" o "CRIPTO")
+     * @param pagina Tamaño de la página (el número de página se ignora, siempre es la primera)
      * @return Lista de conversiones del tipo especificado
      */
-    List<HistorialConversion> findByTipoConversionOrderByFechaHoraDesc(String tipoConversion);
+    @Query("SELECT h FROM HistorialConversion h WHERE h.tipoConversion = :tipo "
+            + "ORDER BY h.fechaHora DESC, h.id DESC")
+    List<HistorialConversion> buscarPrimeraPaginaPorTipo(@Param("tipo") String tipoConversion, Pageable pagina);
+    
+    /**
+     * Obtiene la página siguiente a un cursor (fechaHora, id) mediante paginación por clave,
+     * que recorre el índice (tipoConversion, fechaHora, id) sin saltar filas con OFFSET
+     * @param tipoConversion Tipo de conversión ("MONEDA" o "CRIPTO")
+     * @param fechaHora Fecha de la última conversión de la página anterior
+     * @param id ID de la última conversión de la página anterior
+     * @param pagina Tamaño de la página (el número de página se ignora, siempre es la primera)
+     * @return Lista de conversiones anteriores al cursor
+     */
+    @Query("SELECT h FROM HistorialConversion h WHERE h.tipoConversion = :tipo "
+            + "AND (h.fechaHora < :fechaHora OR (h.fechaHora = :fechaHora AND h.id < :id)) "
+            + "ORDER BY h.fechaHora DESC, h.id DESC")
+    List<HistorialConversion> buscarPaginaPorTipoAntesDe(@Param("tipo") String tipoConversion,
+                                                         @Param("fechaHora") LocalDateTime fechaHora,
+                                                         @Param("id") Long id,
+                                                         Pageable pagina);
     
     /**
-     * Encuentra todas las conversiones entre una moneda de origen y una de destino específicas
-     * @param monedaOrigen Código de la moneda de origen
-     * @param monedaDestino Código de la moneda de destino
-     * @return Lista de conversiones entre las monedas especificadas
+     * Recorre todo el historial en orden de ID sin cargarlo completo en memoria.
+     * Debe consumirse dentro de una transacción y cerrarse al terminar
+     * @return Stream de conversiones leídas por bloques desde la base de datos
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT h FROM HistorialConversion h ORDER BY h.id")
+    Stream<HistorialConversion> recorrerTodo();
+    
+    /**
+     * Obtiene la fecha de la última conversión de cada par de un tipo a partir de una fecha.
+     * Se resuelve con el índice (tipoConversion, fechaHora, id)
+     * @param tipoConversion Tipo de conversión ("MONEDA" o "CRIPTO")
+     * @param desde Fecha a partir de la cual se buscan conversiones
+     * @return Filas con [monedaOrigen, monedaDestino, última fechaHora]
      */
-    List<HistorialConversion> findByMonedaOrigenAndMonedaDestinoOrderByFechaHoraDesc(String monedaOrigen, String monedaDestino);
+    @Query("SELECT h.monedaOrigen, h.monedaDestino, MAX(h.fechaHora) FROM HistorialConversion h "
+            + "WHERE h.tipoConversion = :tipo AND h.fechaHora >= :desde "
+            + "GROUP BY h.monedaOrigen, h.monedaDestino")
+    List<Object[]> buscarUltimaConversionPorParDesde(@Param("tipo") String tipoConversion,
+                                                     @Param("desde") LocalDateTime desde);
     
     /**
      * Cuenta cuántas conversiones hay de un tipo específico
@@ -36,4 +80,26 @@ public interface HistorialConversionRepository extends JpaRepository<HistorialCo
      * @return Número de conversiones del tipo especificado
      */
     long countByTipoConversion(String tipoConversion);
-} 
\ No newline at end of file
+    
+    /**
+     * Cuenta las conversiones agrupadas por moneda de origen y tipo de conversión
+     * @return Filas con [monedaOrigen, tipoConversion, cantidad]
+     */
+    @Query("SELECT h.monedaOrigen, h.tipoConversion, COUNT(h) FROM HistorialConversion h "
+            + "GROUP BY h.monedaOrigen, h.tipoConversion")
+    List<Object[]> contarPorMonedaOrigenYTipo();
+    
+    /**
+     * Obtiene la conversión con el mayor ID
+     * @return Última conversión guardada, si existe
+     */
+    Optional<HistorialConversion> findTopByOrderByIdDesc();
+    
+    /**
+     * Obtiene una página de hasta 1000 conversiones dentro de un rango de IDs, en orden de ID
+     * @param idDesde ID exclusivo a partir del cual buscar
+     * @param idHasta ID inclusivo hasta el cual buscar
+     * @return Lista de conversiones del rango
+     */
+    List<HistorialConversion> findTop1000ByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(Long idDesde, Long idHasta);
+}
@@ -0,0 +1,91 @@
+package com.conversor.service;
+
+import com.conversor.model.SnapshotTasas;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refresca en segundo plano la instantánea de tasas del {@link MotorTasas}.
+ * Cada actualización se programa poco después del time_next_update_unix anunciado
+ * por ExchangeRate-API, de modo que ninguna solicitud espera a la descarga.
+ */
+@Slf4j
+@Component
+public class ActualizadorTasas {
+
+    private final MotorTasas motorTasas;
+    private final long margenSegundos;
+    private final long reintentoSegundos;
+    private final long intervaloPorDefectoSegundos;
+    private final ScheduledExecutorService programador;
+
+    public ActualizadorTasas(
+            MotorTasas motorTasas,
+            @Value("${tasas.actualizacion.margen-segundos:60}") long margenSegundos,
+            @Value("${tasas.actualizacion.reintento-segundos:60}") long reintentoSegundos,
+            @Value("${tasas.actualizacion.intervalo-por-defecto-segundos:3600}") long intervaloPorDefectoSegundos) {
+        this.motorTasas = motorTasas;
+        this.margenSegundos = margenSegundos;
+        this.reintentoSegundos = reintentoSegundos;
+        this.intervaloPorDefectoSegundos = intervaloPorDefectoSegundos;
+        this.programador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "actualizador-tasas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Lanza la primera carga de tasas al terminar el arranque de la aplicación
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        programador.execute(this::actualizar);
+    }
+
+    @PreDestroy
+    public void detener() {
+        programador.shutdownNow();
+    }
+
+    /**
+     * Descarga y publica una nueva instantánea, y programa la siguiente actualización
+     */
+    private void actualizar() {
+        long esperaSegundos;
+        try {
+            SnapshotTasas nueva = motorTasas.actualizar();
+            esperaSegundos = calcularEspera(nueva);
+        } catch (Exception e) {
+            log.warn("No se pudo actualizar la instantánea de tasas: {}. Reintentando en {} s",
+                    e.getMessage(), reintentoSegundos);
+            esperaSegundos = reintentoSegundos;
+        }
+
+        if (!programador.isShutdown()) {
+            log.debug("Próxima actualización de tasas en {} s", esperaSegundos);
+            programador.schedule(this::actualizar, esperaSegundos, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Calcula los segundos hasta la próxima actualización anunciada, más un margen
+     */
+    private long calcularEspera(SnapshotTasas snapshot) {
+        long proxima = snapshot.getProximaActualizacionUnix();
+        if (proxima <= 0) {
+            return intervaloPorDefectoSegundos;
+        }
+        long espera = proxima - Instant.now().getEpochSecond() + margenSegundos;
+        return Math.max(espera, reintentoSegundos);
+    }
+}
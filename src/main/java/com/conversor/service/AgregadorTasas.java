@@ -0,0 +1,331 @@
+package com.conversor.service;
+
+import com.conversor.model.AgregadoTasa;
+import com.conversor.model.Granularidad;
+import com.conversor.model.HistorialConversion;
+import com.conversor.model.SnapshotTasas;
+import com.conversor.model.TipoConversion;
+import com.conversor.model.VersionDatos;
+import com.conversor.repository.AgregadoTasaRepository;
+import com.conversor.repository.HistorialConversionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mantiene la tabla de agregados OHLC por par de monedas (por hora y por día). Los
+ * agregados se actualizan de forma incremental con cada lote de conversiones escrito
+ * en el historial y con cada nueva instantánea de tasas, de modo que los gráficos leen
+ * un número pequeño y fijo de intervalos en lugar de las conversiones individuales.
+ * Las instantáneas se incorporan en un hilo propio para no retener al que las publica.
+ */
+@Slf4j
+@Service
+public class AgregadorTasas {
+
+    private static final int TAMANO_PAGINA_RECONSTRUCCION = 1000;
+
+    private final AgregadoTasaRepository agregadoRepository;
+    private final HistorialConversionRepository historialRepository;
+    private final TransactionTemplate transaccion;
+    private final CacheGraficos cacheGraficos;
+    private final int diasParesActivos;
+
+    /**
+     * Pares de monedas fiduciarias que se alimentan con cada instantánea de tasas, con la
+     * fecha de su última conversión; los que no se usan en la ventana configurada se descartan
+     */
+    private final Map<String, LocalDateTime> paresActivos = new ConcurrentHashMap<>();
+    private final ExecutorService ejecutorInstantaneas;
+    private volatile long ultimaInstantaneaUnix;
+    private Long maximoIdReconstruccion;
+
+    /**
+     * Aumenta cada vez que se guardan agregados; su valor en ese momento, junto con el instante
+     * de arranque (el contador vuelve a cero en cada proceso), pasa a ser la versión de los pares
+     * afectados. Cada par comparte versión con su inverso, ya que los gráficos leen ambos
+     */
+    private final AtomicLong revision = new AtomicLong();
+    private final long arranqueMillis = System.currentTimeMillis();
+    private final String arranque = Long.toHexString(arranqueMillis);
+    private final Map<String, VersionDatos> versionesPar = new ConcurrentHashMap<>();
+
+    public AgregadorTasas(
+            AgregadoTasaRepository agregadoRepository,
+            HistorialConversionRepository historialRepository,
+            PlatformTransactionManager transactionManager,
+            CacheGraficos cacheGraficos,
+            @Value("${agregados.dias-pares-activos:30}") int diasParesActivos) {
+        this.agregadoRepository = agregadoRepository;
+        this.historialRepository = historialRepository;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.cacheGraficos = cacheGraficos;
+        this.diasParesActivos = diasParesActivos;
+        this.ejecutorInstantaneas = Executors.newSingleThreadExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "agregador-instantaneas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Carga los pares activos a partir de las conversiones de moneda recientes del historial y,
+     * si la tabla de agregados está vacía, fija el último ID del historial a reconstruir. Se
+     * ejecuta antes de que la aplicación acepte solicitudes, de modo que ninguna conversión
+     * nueva entra en la reconstrucción
+     */
+    @PostConstruct
+    public void cargarEstado() {
+        LocalDateTime desde = LocalDateTime.now().minusDays(diasParesActivos);
+        for (Object[] fila : historialRepository.buscarUltimaConversionPorParDesde(TipoConversion.MONEDA.name(), desde)) {
+            paresActivos.put(clavePar((String) fila[0], (String) fila[1]), (LocalDateTime) fila[2]);
+        }
+
+        if (agregadoRepository.count() == 0) {
+            maximoIdReconstruccion = historialRepository.findTopByOrderByIdDesc()
+                    .map(HistorialConversion::getId)
+                    .orElse(null);
+        }
+    }
+
+    /**
+     * Reconstruye en segundo plano los agregados del historial existente, si hace falta
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (maximoIdReconstruccion != null) {
+            Thread hilo = new Thread(() -> reconstruirDesdeHistorial(maximoIdReconstruccion), "reconstruccion-agregados");
+            hilo.setDaemon(true);
+            hilo.start();
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutorInstantaneas.shutdownNow();
+    }
+
+    /**
+     * Incorpora un lote de conversiones ya guardadas en el historial
+     * @param lote Conversiones a incorporar
+     */
+    public synchronized void registrarConversiones(List<HistorialConversion> lote) {
+        Map<String, AgregadoTasa> parciales = new LinkedHashMap<>();
+        Set<String> pares = new LinkedHashSet<>();
+        for (HistorialConversion conversion : lote) {
+            String par = clavePar(conversion.getMonedaOrigen(), conversion.getMonedaDestino());
+            pares.add(par);
+            if (TipoConversion.MONEDA.name().equals(conversion.getTipoConversion())) {
+                paresActivos.merge(par, conversion.getFechaHora(), AgregadorTasas::posterior);
+            }
+            for (Granularidad granularidad : Granularidad.values()) {
+                acumular(parciales, conversion.getMonedaOrigen(), conversion.getMonedaDestino(), granularidad,
+                        conversion.getTasaCambio(), conversion.getFechaHora());
+            }
+        }
+        guardar(parciales);
+        for (String par : pares) {
+            String[] monedas = par.split("\\|");
+            cacheGraficos.invalidarPar(monedas[0], monedas[1]);
+        }
+    }
+
+    /**
+     * Encola la incorporación de una nueva instantánea publicada
+     * @param snapshot Instantánea de tasas publicada por el {@link MotorTasas}
+     */
+    @EventListener
+    public void alPublicarInstantanea(SnapshotTasas snapshot) {
+        try {
+            ejecutorInstantaneas.execute(() -> incorporarInstantanea(snapshot));
+        } catch (RejectedExecutionException e) {
+            log.debug("Instantánea descartada: el agregador se está deteniendo");
+        }
+    }
+
+    /**
+     * Descarta los pares sin conversiones recientes e incorpora la tasa de cada par activo
+     */
+    private synchronized void incorporarInstantanea(SnapshotTasas snapshot) {
+        // La misma instantánea de la API puede descargarse más de una vez
+        if (snapshot.getActualizadoUnix() == ultimaInstantaneaUnix) {
+            return;
+        }
+        ultimaInstantaneaUnix = snapshot.getActualizadoUnix();
+
+        LocalDateTime limite = LocalDateTime.now().minusDays(diasParesActivos);
+        paresActivos.values().removeIf(ultimaConversion -> ultimaConversion.isBefore(limite));
+
+        LocalDateTime fecha = LocalDateTime.ofInstant(
+                Instant.ofEpochSecond(snapshot.getActualizadoUnix()), ZoneId.systemDefault());
+        Map<String, AgregadoTasa> parciales = new LinkedHashMap<>();
+        for (String par : paresActivos.keySet()) {
+            String[] monedas = par.split("\\|");
+            if (snapshot.contiene(monedas[0]) && snapshot.contiene(monedas[1])) {
+                double tasa = snapshot.tasaCruzada(monedas[0], monedas[1]);
+                for (Granularidad granularidad : Granularidad.values()) {
+                    acumular(parciales, monedas[0], monedas[1], granularidad, tasa, fecha);
+                }
+            }
+        }
+        try {
+            guardar(parciales);
+        } catch (RuntimeException e) {
+            log.error("No se pudo incorporar la instantánea a los agregados: {}", e.getMessage());
+            return;
+        }
+        cacheGraficos.invalidarSerie();
+        log.debug("Instantánea incorporada a los agregados de {} pares", paresActivos.size());
+    }
+
+    /**
+     * Obtiene los agregados de un par desde una fecha, en orden cronológico
+     * @param monedaOrigen Código de la moneda de origen
+     * @param monedaDestino Código de la moneda de destino
+     * @param granularidad Granularidad de los intervalos
+     * @param desde Inicio del primer intervalo a incluir
+     * @return Lista de agregados del par
+     */
+    @Transactional(readOnly = true)
+    public List<AgregadoTasa> obtenerAgregados(String monedaOrigen, String monedaDestino,
+                                               Granularidad granularidad, LocalDateTime desde) {
+        return agregadoRepository
+                .findByMonedaOrigenAndMonedaDestinoAndGranularidadAndInicioGreaterThanEqualOrderByInicioAsc(
+                        monedaOrigen, monedaDestino, granularidad.name(), granularidad.inicioDe(desde));
+    }
+
+    /**
+     * Obtiene la versión de los agregados de un par y de su inverso: solo cambia cuando se
+     * guardan nuevos datos de alguno de los dos
+     * @param monedaOrigen Código de la moneda de origen
+     * @param monedaDestino Código de la moneda de destino
+     * @return Versión basada en el arranque del proceso y la última escritura del par
+     */
+    public VersionDatos version(String monedaOrigen, String monedaDestino) {
+        VersionDatos version = versionesPar.get(claveParSinOrden(monedaOrigen, monedaDestino));
+        return version != null ? version : new VersionDatos("a" + arranque + ".0", arranqueMillis);
+    }
+
+    /**
+     * Recorre el historial por páginas de ID para poblar los agregados por primera vez.
+     * Solo incluye las conversiones existentes al arrancar; las nuevas llegan por el escritor
+     * @param maximo Último ID del historial incluido en la reconstrucción
+     */
+    private void reconstruirDesdeHistorial(long maximo) {
+        log.info("Reconstruyendo agregados de tasas a partir del historial");
+        long ultimoId = 0L;
+        List<HistorialConversion> pagina;
+        do {
+            pagina = historialRepository.findTop1000ByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(ultimoId, maximo);
+            if (!pagina.isEmpty()) {
+                registrarConversiones(pagina);
+                ultimoId = pagina.get(pagina.size() - 1).getId();
+            }
+        } while (pagina.size() == TAMANO_PAGINA_RECONSTRUCCION);
+        log.info("Agregados de tasas reconstruidos hasta la conversión {}", ultimoId);
+    }
+
+    /**
+     * Acumula una observación en el agregado parcial de su intervalo
+     */
+    private static void acumular(Map<String, AgregadoTasa> parciales, String monedaOrigen, String monedaDestino,
+                                 Granularidad granularidad, double tasa, LocalDateTime fecha) {
+        String clave = claveIntervalo(monedaOrigen, monedaDestino, granularidad.name(), granularidad.inicioDe(fecha));
+        AgregadoTasa parcial = parciales.get(clave);
+        if (parcial == null) {
+            parciales.put(clave, AgregadoTasa.nuevo(monedaOrigen, monedaDestino, granularidad, tasa, fecha));
+        } else {
+            parcial.incorporar(tasa, fecha);
+        }
+    }
+
+    /**
+     * Combina los agregados parciales con los existentes en la base de datos y los guarda en
+     * una transacción. Se invoca con el monitor tomado, por lo que la transacción termina
+     * antes de que otro hilo pueda leer los mismos agregados
+     */
+    private void guardar(Map<String, AgregadoTasa> parciales) {
+        if (parciales.isEmpty()) {
+            return;
+        }
+        transaccion.executeWithoutResult(estado -> combinarYGuardar(parciales));
+        VersionDatos version = new VersionDatos("a" + arranque + '.' + Long.toHexString(revision.incrementAndGet()),
+                System.currentTimeMillis());
+        for (AgregadoTasa parcial : parciales.values()) {
+            versionesPar.put(claveParSinOrden(parcial.getMonedaOrigen(), parcial.getMonedaDestino()), version);
+        }
+    }
+
+    /**
+     * Carga en una sola consulta los agregados existentes de los intervalos afectados
+     */
+    private void combinarYGuardar(Map<String, AgregadoTasa> parciales) {
+        Set<String> origenes = new HashSet<>();
+        Set<String> destinos = new HashSet<>();
+        Set<LocalDateTime> inicios = new HashSet<>();
+        for (AgregadoTasa parcial : parciales.values()) {
+            origenes.add(parcial.getMonedaOrigen());
+            destinos.add(parcial.getMonedaDestino());
+            inicios.add(parcial.getInicio());
+        }
+        Map<String, AgregadoTasa> existentes = new HashMap<>();
+        for (AgregadoTasa existente : agregadoRepository.buscarIntervalos(origenes, destinos, inicios)) {
+            existentes.put(claveIntervalo(existente.getMonedaOrigen(), existente.getMonedaDestino(),
+                    existente.getGranularidad(), existente.getInicio()), existente);
+        }
+
+        List<AgregadoTasa> aGuardar = new ArrayList<>(parciales.size());
+        parciales.forEach((clave, parcial) -> {
+            AgregadoTasa existente = existentes.get(clave);
+            if (existente == null) {
+                aGuardar.add(parcial);
+            } else {
+                existente.combinar(parcial);
+                aGuardar.add(existente);
+            }
+        });
+        agregadoRepository.saveAll(aGuardar);
+    }
+
+    private static String claveIntervalo(String monedaOrigen, String monedaDestino, String granularidad,
+                                         LocalDateTime inicio) {
+        return clavePar(monedaOrigen, monedaDestino) + '|' + granularidad + '|' + inicio;
+    }
+
+    private static LocalDateTime posterior(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static String clavePar(String monedaOrigen, String monedaDestino) {
+        return Objects.requireNonNull(monedaOrigen) + '|' + Objects.requireNonNull(monedaDestino);
+    }
+
+    private static String claveParSinOrden(String monedaA, String monedaB) {
+        return monedaA.compareTo(monedaB) <= 0 ? clavePar(monedaA, monedaB) : clavePar(monedaB, monedaA);
+    }
+}
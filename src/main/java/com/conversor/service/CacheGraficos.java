@@ -0,0 +1,189 @@
+package com.conversor.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Caché acotada de los conjuntos de datos de los gráficos. Cada entrada caduca tras un
+ * tiempo máximo y, si se supera el tamaño máximo, se expulsa la usada hace más tiempo.
+ * Las entradas llevan etiquetas (par de monedas, serie de tasas) y se invalidan cuando se
+ * registran datos nuevos para alguna de ellas. Los lectores de una
+ * entrada que se está calculando esperan ese mismo cálculo en lugar de repetirlo. Los
+ * aciertos, fallos, expulsiones y el tamaño se publican con los nombres estándar cache.*.
+ * Las claves incluyen la versión de los datos con la que se responde, por lo que la
+ * invalidación solo libera antes las entradas que ya no pueden volver a pedirse.
+ */
+@Slf4j
+@Component
+public class CacheGraficos {
+
+    private static final String PREFIJO_PAR = "par:";
+    private static final String NOMBRE_CACHE = "graficos";
+    static final String ETIQUETA_SERIE = "serie";
+
+    private final long ttlMillis;
+    private final Map<String, Entrada> entradas;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder expulsiones = new LongAdder();
+    private final LongAdder invalidaciones = new LongAdder();
+
+    public CacheGraficos(
+            @Value("${graficos.cache.max-entradas:500}") int maxEntradas,
+            @Value("${graficos.cache.ttl-segundos:300}") long ttlSegundos,
+            MeterRegistry meterRegistry) {
+        this.ttlMillis = ttlSegundos * 1000;
+        // Orden de acceso: la primera entrada es la usada hace más tiempo
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> mayor) {
+                if (size() > maxEntradas) {
+                    expulsiones.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        FunctionCounter.builder("cache.gets", aciertos, LongAdder::sum)
+                .tags("cache", NOMBRE_CACHE, "result", "hit").register(meterRegistry);
+        FunctionCounter.builder("cache.gets", fallos, LongAdder::sum)
+                .tags("cache", NOMBRE_CACHE, "result", "miss").register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", expulsiones, LongAdder::sum)
+                .tag("cache", NOMBRE_CACHE).register(meterRegistry);
+        FunctionCounter.builder("cache.invalidaciones", invalidaciones, LongAdder::sum)
+                .tag("cache", NOMBRE_CACHE).register(meterRegistry);
+        Gauge.builder("cache.size", this, CacheGraficos::tamano)
+                .tag("cache", NOMBRE_CACHE).register(meterRegistry);
+    }
+
+    /**
+     * Devuelve el conjunto de datos guardado para la clave o lo calcula y lo guarda
+     * @param clave Identifica la consulta, incluidos todos sus parámetros
+     * @param etiquetas Datos de los que depende la entrada; ver {@link #etiquetaPar}
+     * @param calculo Construye el conjunto de datos si no está en la caché
+     * @return Conjunto de datos de solo lectura
+     */
+    public Map<String, Object> obtener(String clave, String[] etiquetas, Supplier<Map<String, Object>> calculo) {
+        Entrada entrada;
+        boolean calcular = false;
+        long ahora = System.currentTimeMillis();
+        synchronized (this) {
+            entrada = entradas.get(clave);
+            if (entrada != null && entrada.caducaEn > ahora) {
+                aciertos.increment();
+            } else {
+                fallos.increment();
+                entrada = new Entrada(etiquetas, ahora + ttlMillis);
+                entradas.put(clave, entrada);
+                calcular = true;
+            }
+        }
+
+        if (calcular) {
+            log.debug("Caché de gráficos sin datos vigentes para {}; se calculan", clave);
+            try {
+                entrada.valor.complete(calculo.get());
+            } catch (RuntimeException e) {
+                quitar(clave, entrada);
+                entrada.valor.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return entrada.valor.join();
+        } catch (CompletionException e) {
+            Throwable causa = e.getCause();
+            throw causa instanceof RuntimeException ? (RuntimeException) causa : e;
+        }
+    }
+
+    /**
+     * Invalida las entradas que dependen de un par de monedas
+     */
+    public void invalidarPar(String monedaOrigen, String monedaDestino) {
+        invalidar(etiquetaPar(monedaOrigen, monedaDestino));
+    }
+
+    /**
+     * Invalida las entradas que dependen de la serie de instantáneas de tasas
+     */
+    public void invalidarSerie() {
+        invalidar(ETIQUETA_SERIE);
+    }
+
+    static String etiquetaPar(String monedaOrigen, String monedaDestino) {
+        return PREFIJO_PAR + monedaOrigen + '|' + monedaDestino;
+    }
+
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    public long getExpulsiones() {
+        return expulsiones.sum();
+    }
+
+    public long getInvalidaciones() {
+        return invalidaciones.sum();
+    }
+
+    public synchronized int tamano() {
+        return entradas.size();
+    }
+
+    private synchronized void invalidar(String etiqueta) {
+        Iterator<Entrada> iterador = entradas.values().iterator();
+        while (iterador.hasNext()) {
+            if (iterador.next().tieneEtiqueta(etiqueta)) {
+                iterador.remove();
+                invalidaciones.increment();
+            }
+        }
+    }
+
+    private synchronized void quitar(String clave, Entrada entrada) {
+        entradas.remove(clave, entrada);
+    }
+
+    /**
+     * Conjunto de datos, o su cálculo en curso, con sus etiquetas y su caducidad
+     */
+    private static final class Entrada {
+        private final CompletableFuture<Map<String, Object>> valor = new CompletableFuture<>();
+        private final String[] etiquetas;
+        private final long caducaEn;
+
+        private Entrada(String[] etiquetas, long caducaEn) {
+            this.etiquetas = etiquetas;
+            this.caducaEn = caducaEn;
+        }
+
+        private boolean tieneEtiqueta(String etiqueta) {
+            for (String propia : etiquetas) {
+                if (propia.equals(etiqueta)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
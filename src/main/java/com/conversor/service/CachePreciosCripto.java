@@ -0,0 +1,156 @@
+package com.conversor.service;
+
+import com.conversor.http.ClienteCoinMarketCap;
+import com.conversor.http.ListadoCripto;
+import com.conversor.model.SnapshotTasas;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caché de precios en USD de las criptomonedas más importantes, alimentada
+ * periódicamente desde cryptocurrency/listings/latest. Los precios en otras monedas
+ * fiduciarias se obtienen cruzando con la instantánea del {@link MotorTasas}. Si el
+ * listado no se renueva durante varios intervalos seguidos sus precios dejan de usarse
+ * y las consultas vuelven a CoinMarketCap.
+ */
+@Slf4j
+@Component
+public class CachePreciosCripto {
+
+    private static final String MONEDA_LISTADO = "USD";
+    private static final int INTERVALOS_VIGENCIA = 3;
+
+    private final ClienteCoinMarketCap clienteCoinMarketCap;
+    private final MotorTasas motorTasas;
+    private final int limite;
+    private final long intervaloSegundos;
+    private final long vigenciaMillis;
+    private final ScheduledExecutorService programador;
+    private final Counter aciertos;
+    private final Counter fallos;
+
+    private volatile Listado listado = new Listado(Collections.emptyMap(), 0L);
+
+    public CachePreciosCripto(
+            ClienteCoinMarketCap clienteCoinMarketCap,
+            MotorTasas motorTasas,
+            @Value("${cripto.listado.limite:100}") int limite,
+            @Value("${cripto.listado.intervalo-segundos:300}") long intervaloSegundos,
+            MeterRegistry meterRegistry) {
+        this.clienteCoinMarketCap = clienteCoinMarketCap;
+        this.motorTasas = motorTasas;
+        this.limite = limite;
+        this.intervaloSegundos = intervaloSegundos;
+        this.vigenciaMillis = TimeUnit.SECONDS.toMillis(intervaloSegundos * INTERVALOS_VIGENCIA);
+        this.programador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "cache-precios-cripto");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        // Un fallo obliga a consultar CoinMarketCap; la proporción de aciertos indica si el listado es suficiente
+        this.aciertos = Counter.builder("cache.gets").tags("cache", "precios-cripto", "result", "hit")
+                .register(meterRegistry);
+        this.fallos = Counter.builder("cache.gets").tags("cache", "precios-cripto", "result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, cache -> cache.listado.preciosUsd.size())
+                .tag("cache", "precios-cripto").register(meterRegistry);
+    }
+
+    /**
+     * Programa la actualización periódica del listado al terminar el arranque
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        programador.scheduleWithFixedDelay(this::actualizar, 0, intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        programador.shutdownNow();
+    }
+
+    /**
+     * Busca el precio de una criptomoneda en la caché
+     * @param simboloCripto Símbolo de la criptomoneda (ej. BTC)
+     * @param monedaFiat Moneda fiduciaria en la que se expresa el precio (ej. EUR)
+     * @return Precio de una unidad, o vacío si la criptomoneda no está en el listado, el
+     *         listado está vencido o no hay tasa disponible para la moneda fiduciaria
+     */
+    public OptionalDouble obtenerPrecio(String simboloCripto, String monedaFiat) {
+        OptionalDouble precio = buscarPrecio(simboloCripto, monedaFiat);
+        (precio.isPresent() ? aciertos : fallos).increment();
+        return precio;
+    }
+
+    private OptionalDouble buscarPrecio(String simboloCripto, String monedaFiat) {
+        Listado actual = listado;
+        if (System.currentTimeMillis() - actual.obtenidoEnMillis > vigenciaMillis) {
+            return OptionalDouble.empty();
+        }
+        Double precioUsd = actual.preciosUsd.get(simboloCripto.toUpperCase(Locale.ROOT));
+        if (precioUsd == null) {
+            return OptionalDouble.empty();
+        }
+
+        String fiat = monedaFiat.toUpperCase(Locale.ROOT);
+        if (MONEDA_LISTADO.equals(fiat)) {
+            return OptionalDouble.of(precioUsd);
+        }
+
+        SnapshotTasas snapshot = motorTasas.snapshotActual();
+        if (snapshot == null || !snapshot.contiene(fiat)) {
+            return OptionalDouble.empty();
+        }
+        return OptionalDouble.of(precioUsd * snapshot.tasaCruzada(MONEDA_LISTADO, fiat));
+    }
+
+    /**
+     * Descarga el listado y publica un nuevo mapa de precios
+     */
+    private void actualizar() {
+        try {
+            long obtenidoEn = System.currentTimeMillis();
+            ListadoCripto respuesta = clienteCoinMarketCap.listarCriptomonedasAsync(limite).get();
+            Map<String, Double> precios = new HashMap<>(respuesta.tamano() * 2);
+            for (int i = 0; i < respuesta.tamano(); i++) {
+                // El listado viene ordenado por capitalización; ante símbolos repetidos se conserva el primero
+                precios.putIfAbsent(respuesta.simbolo(i), respuesta.precio(i));
+            }
+            listado = new Listado(Collections.unmodifiableMap(precios), obtenidoEn);
+            log.debug("Caché de precios de criptomonedas actualizada con {} símbolos", precios.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("No se pudo actualizar el listado de criptomonedas: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Precios en USD junto con el momento en que se pidió el listado
+     */
+    private static final class Listado {
+        private final Map<String, Double> preciosUsd;
+        private final long obtenidoEnMillis;
+
+        private Listado(Map<String, Double> preciosUsd, long obtenidoEnMillis) {
+            this.preciosUsd = preciosUsd;
+            this.obtenidoEnMillis = obtenidoEnMillis;
+        }
+    }
+}
@@ -1,24 +1,42 @@
 package com.conversor.service;
 
 import com.conversor.http.ClienteExchangeRate;
-import com.conversor.http.ClienteCoinMarketCap;
+import com.conversor.http.AgrupadorCotizacionesCripto;
+import com.conversor.model.CatalogoMonedas;
+import com.conversor.model.CursorHistorial;
 import com.conversor.model.HistorialConversion;
+import com.conversor.model.IndiceMonedas;
+import com.conversor.model.ResultadoConversion;
+import com.conversor.model.SolicitudConversion;
+import com.conversor.model.SnapshotTasas;
 import com.conversor.model.TipoConversion;
+import com.conversor.model.VersionDatos;
 import com.conversor.repository.HistorialConversionRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.JsonObject;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.OptionalDouble;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -27,55 +45,71 @@ public class ConversionService {
 
     private final HistorialConversionRepository historialRepository;
     private final ClienteExchangeRate clienteExchangeRate;
-    private final ClienteCoinMarketCap clienteCoinMarketCap;
+    private final AgrupadorCotizacionesCripto agrupadorCotizaciones;
+    private final CachePreciosCripto cachePreciosCripto;
+    private final MotorTasas motorTasas;
+    private final EscritorHistorial escritorHistorial;
+    private final EstadisticasConversiones estadisticas;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
     
-    private Map<String, String> monedasCache = new HashMap<>();
+    private volatile CatalogoMonedas catalogoMonedas;
     
     /**
      * Obtiene la lista de monedas disponibles para conversión
-     * @return Mapa con código y nombre de las monedas (ordenado alfabéticamente por nombre)
+     * @return Mapa de solo lectura con código y nombre de las monedas (ordenado alfabéticamente por nombre)
      * @throws IOException En caso de error en la comunicación con la API
      * @throws ExecutionException Si hay un error en la ejecución asíncrona
      * @throws InterruptedException Si la operación es interrumpida
      */
     public Map<String, String> obtenerMonedas() throws IOException, ExecutionException, InterruptedException {
-        if (monedasCache.isEmpty()) {
-            cargarMonedasDesdeAPI();
+        return obtenerCatalogoMonedas().getMonedas();
+    }
+    
+    /**
+     * Obtiene el catálogo de monedas ya ordenado y serializado, cargándolo si aún no existe
+     * @return Catálogo vigente (vacío si la API no devolvió monedas)
+     * @throws IOException En caso de error en la comunicación con la API
+     * @throws ExecutionException Si hay un error en la ejecución asíncrona
+     * @throws InterruptedException Si la operación es interrumpida
+     */
+    public CatalogoMonedas obtenerCatalogoMonedas() throws IOException, ExecutionException, InterruptedException {
+        CatalogoMonedas actual = catalogoMonedas;
+        if (actual == null || actual.estaVacio()) {
+            actual = cargarMonedasDesdeAPI();
         }
-        
-        return ordenarMonedasAlfabeticamente(monedasCache);
+        return actual;
     }
     
     /**
-     * Carga la lista de monedas desde la API y las almacena en caché
+     * Carga la lista de monedas desde la API y publica el catálogo ordenado. Las llamadas
+     * concurrentes comparten una única solicitud a la API
      */
-    private void cargarMonedasDesdeAPI() throws ExecutionException, InterruptedException {
+    private CatalogoMonedas cargarMonedasDesdeAPI() throws JsonProcessingException, ExecutionException, InterruptedException {
         log.debug("Obteniendo lista de monedas desde la API...");
         CompletableFuture<JsonObject> future = clienteExchangeRate.obtenerMonedasAsync();
         JsonObject json = future.get();
         
+        Map<String, String> monedas = new HashMap<>();
         if (json.has("supported_codes")) {
             log.debug("Procesando lista de monedas recibida");
             json.getAsJsonArray("supported_codes").forEach(element -> {
                 String codigo = element.getAsJsonArray().get(0).getAsString();
                 String nombre = element.getAsJsonArray().get(1).getAsString();
-                monedasCache.put(codigo, nombre);
+                monedas.put(codigo, nombre);
             });
-            log.debug("Se obtuvieron {} monedas", monedasCache.size());
+            log.debug("Se obtuvieron {} monedas", monedas.size());
         } else {
             log.warn("La respuesta de la API no contiene el campo 'supported_codes'");
         }
-    }
-    
-    /**
-     * Ordena el mapa de monedas por nombre alfabéticamente
-     */
-    private Map<String, String> ordenarMonedasAlfabeticamente(Map<String, String> monedas) {
-        Map<String, String> monedasOrdenadas = new TreeMap<>((k1, k2) -> {
-            return monedas.get(k1).compareToIgnoreCase(monedas.get(k2));
-        });
-        monedasOrdenadas.putAll(monedas);
-        return monedasOrdenadas;
+        
+        // El catálogo se ordena y serializa una sola vez y se publica completo
+        CatalogoMonedas catalogo = CatalogoMonedas.de(monedas, objectMapper);
+        if (!catalogo.estaVacio()) {
+            catalogoMonedas = catalogo;
+        }
+        return catalogo;
     }
     
     /**
@@ -92,30 +126,199 @@ public class ConversionService {
             throws IOException, ExecutionException, InterruptedException {
         log.debug("Iniciando conversión de {} {} a {}", cantidad, monedaOrigen, monedaDestino);
         
-        CompletableFuture<JsonObject> future = clienteExchangeRate.convertirAsync(monedaOrigen, monedaDestino, cantidad);
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        boolean exito = false;
         try {
-            JsonObject json = future.get();
-            log.debug("Respuesta recibida: {}", json);
+            double tasaCambio = motorTasas.obtenerTasa(monedaOrigen, monedaDestino);
+            double resultado = aplicarConversion(monedaOrigen, monedaDestino, cantidad, tasaCambio, TipoConversion.MONEDA);
+            exito = true;
+            return resultado;
+        } finally {
+            muestra.stop(temporizadorConversion(TipoConversion.MONEDA, exito));
+        }
+    }
+    
+    /**
+     * Convierte una cantidad de una moneda a otra sin bloquear el hilo que llama. Solo el
+     * arranque en frío espera a la API, y lo hace de forma asíncrona
+     * @param monedaOrigen Código de la moneda de origen
+     * @param monedaDestino Código de la moneda de destino
+     * @param cantidad Cantidad a convertir
+     * @return Future con el resultado de la conversión y el estado de la instantánea usada para
+     *         calcularla; falla con IOException si no hay tasas o alguna moneda no está soportada
+     */
+    public CompletableFuture<Map<String, Object>> convertirMonedaAsync(String monedaOrigen, String monedaDestino,
+                                                                       double cantidad) {
+        log.debug("Iniciando conversión de {} {} a {}", cantidad, monedaOrigen, monedaDestino);
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        return motorTasas.obtenerSnapshotAsync()
+                .thenApply(snapshot -> {
+                    double tasaCambio;
+                    try {
+                        tasaCambio = snapshot.tasaCruzada(monedaOrigen, monedaDestino);
+                    } catch (IllegalArgumentException e) {
+                        throw new CompletionException(new IOException(e.getMessage(), e));
+                    }
+                    double resultado = aplicarConversion(monedaOrigen, monedaDestino, cantidad, tasaCambio,
+                            TipoConversion.MONEDA);
+                    
+                    // El estado se toma de la misma instantánea, aunque otra la haya reemplazado
+                    Map<String, Object> respuesta = estadoTasas(snapshot);
+                    respuesta.put("monedaOrigen", monedaOrigen);
+                    respuesta.put("monedaDestino", monedaDestino);
+                    respuesta.put("cantidadOrigen", cantidad);
+                    respuesta.put("cantidadDestino", resultado);
+                    return respuesta;
+                })
+                .whenComplete((resultado, error) ->
+                        muestra.stop(temporizadorConversion(TipoConversion.MONEDA, error == null)));
+    }
+    
+    /**
+     * Temporizador de las conversiones individuales por tipo y resultado
+     */
+    private Timer temporizadorConversion(TipoConversion tipo, boolean exito) {
+        return meterRegistry.timer("conversiones", "tipo", tipo.name(), "resultado", exito ? "exito" : "error");
+    }
+    
+    /**
+     * Aplica la tasa a la cantidad y registra la conversión en el historial
+     */
+    private double aplicarConversion(String monedaOrigen, String monedaDestino, double cantidad, double tasaCambio,
+                                     TipoConversion tipoConversion) {
+        double resultado = cantidad * tasaCambio;
+        
+        log.debug("Conversión exitosa: {} {} = {} {} (tasa: {})",
+                cantidad, monedaOrigen, resultado, monedaDestino, tasaCambio);
+        
+        // Registrar en el historial
+        registrarConversion(monedaOrigen, monedaDestino, cantidad, resultado, tasaCambio, tipoConversion);
+        
+        return resultado;
+    }
+    
+    /**
+     * Estado de una instantánea de tasas: su marca de tiempo, su antigüedad y si está obsoleta
+     */
+    private Map<String, Object> estadoTasas(SnapshotTasas snapshot) {
+        Map<String, Object> estado = new HashMap<>();
+        if (snapshot != null) {
+            estado.put("tasasActualizadasUnix", snapshot.getActualizadoUnix());
+            estado.put("antiguedadTasasSegundos", snapshot.antiguedadSegundos());
+            estado.put("tasasObsoletas", motorTasas.estaObsoleta(snapshot));
+        }
+        return estado;
+    }
+    
+    /**
+     * Convierte un lote de cantidades entre monedas fiduciarias con una única instantánea de
+     * tasas, de modo que todos los elementos usan las mismas tasas. Las conversiones válidas se
+     * registran en el historial en un solo lote; los elementos inválidos se informan con su error
+     * @param solicitudes Conversiones a realizar
+     * @return Mapa con los resultados en el orden recibido y el estado de la instantánea usada
+     * @throws IOException Si no hay tasas disponibles
+     */
+    public Map<String, Object> convertirLote(List<SolicitudConversion> solicitudes) throws IOException {
+        log.debug("Iniciando conversión por lotes de {} elementos", solicitudes.size());
+        SnapshotTasas snapshot = motorTasas.obtenerSnapshot();
+        IndiceMonedas indice = snapshot.getIndice();
+        LocalDateTime fechaHora = LocalDateTime.now();
+        
+        List<ResultadoConversion> resultados = new ArrayList<>(solicitudes.size());
+        List<HistorialConversion> historial = new ArrayList<>(solicitudes.size());
+        for (SolicitudConversion solicitud : solicitudes) {
+            if (solicitud == null) {
+                resultados.add(ResultadoConversion.error(null, null, null, "Solicitud vacía"));
+                continue;
+            }
+            String monedaOrigen = solicitud.getMonedaOrigen();
+            String monedaDestino = solicitud.getMonedaDestino();
+            Double cantidad = solicitud.getCantidad();
+            if (cantidad == null || !Double.isFinite(cantidad)) {
+                resultados.add(ResultadoConversion.error(monedaOrigen, monedaDestino, cantidad, "Cantidad inválida"));
+                continue;
+            }
+            if (!soportada(snapshot, monedaOrigen) || !soportada(snapshot, monedaDestino)) {
+                String moneda = soportada(snapshot, monedaOrigen) ? monedaDestino : monedaOrigen;
+                resultados.add(ResultadoConversion.error(monedaOrigen, monedaDestino, cantidad,
+                        "Moneda no soportada: " + moneda));
+                continue;
+            }
             
-            if (json.has("conversion_result")) {
-                double resultado = json.get("conversion_result").getAsDouble();
-                double tasaCambio = json.get("conversion_rate").getAsDouble();
-                
-                log.debug("Conversión exitosa: {} {} = {} {} (tasa: {})",
-                        cantidad, monedaOrigen, resultado, monedaDestino, tasaCambio);
-                
-                // Registrar en el historial
-                registrarConversion(monedaOrigen, monedaDestino, cantidad, resultado, tasaCambio, TipoConversion.MONEDA);
-                
-                return resultado;
-            } else {
-                log.error("La respuesta no contiene el campo 'conversion_result': {}", json);
-                throw new IOException("Error en la conversión: respuesta incompleta");
+            double tasaCambio = snapshot.tasaCruzada(indice.ordinal(monedaOrigen), indice.ordinal(monedaDestino));
+            double resultado = cantidad * tasaCambio;
+            resultados.add(ResultadoConversion.exito(monedaOrigen, monedaDestino, cantidad, resultado, tasaCambio));
+            historial.add(crearHistorial(monedaOrigen, monedaDestino, cantidad, resultado, tasaCambio,
+                    TipoConversion.MONEDA, fechaHora));
+        }
+        
+        if (!historial.isEmpty()) {
+            escritorHistorial.encolarTodas(historial);
+            historial.forEach(h -> estadisticas.registrar(h.getMonedaOrigen(), h.getTipoConversion()));
+        }
+        log.debug("Conversión por lotes completada: {} de {} elementos convertidos", historial.size(), solicitudes.size());
+        
+        Map<String, Object> respuesta = estadoTasas(snapshot);
+        respuesta.put("convertidas", historial.size());
+        respuesta.put("errores", solicitudes.size() - historial.size());
+        respuesta.put("resultados", resultados);
+        return respuesta;
+    }
+    
+    private static boolean soportada(SnapshotTasas snapshot, String moneda) {
+        return moneda != null && snapshot.contiene(moneda);
+    }
+    
+    /**
+     * Obtiene la instantánea de tasas vigente, cargándola si todavía no existe
+     * @throws IOException Si no hay tasas disponibles
+     */
+    public SnapshotTasas obtenerSnapshotTasas() throws IOException {
+        return motorTasas.obtenerSnapshot();
+    }
+    
+    /**
+     * Convierte una cantidad a todas las monedas de una instantánea, o a un subconjunto de
+     * ellas, en un único recorrido del arreglo de tasas. No se registra en el historial
+     * @param snapshot Instantánea de tasas a usar
+     * @param monedaOrigen Código de la moneda de origen
+     * @param cantidad Cantidad a convertir
+     * @param monedas Monedas de destino, o null/vacío para todas
+     * @return Mapa con las cantidades por moneda (ordenadas por código) y el estado de la instantánea
+     * @throws IllegalArgumentException Si la moneda de origen no está soportada
+     */
+    public Map<String, Object> convertirATodas(SnapshotTasas snapshot, String monedaOrigen, double cantidad,
+                                               List<String> monedas) {
+        double[] cantidades = snapshot.convertirATodas(snapshot.ordinalSoportado(monedaOrigen), cantidad);
+        IndiceMonedas indice = snapshot.getIndice();
+        
+        Map<String, Double> resultados = new LinkedHashMap<>();
+        List<String> noSoportadas = new ArrayList<>();
+        if (monedas == null || monedas.isEmpty()) {
+            for (int i = 0; i < cantidades.length; i++) {
+                if (!Double.isNaN(cantidades[i])) {
+                    resultados.put(indice.codigo(i), cantidades[i]);
+                }
+            }
+        } else {
+            for (String moneda : monedas) {
+                int ordinal = indice.ordinal(moneda);
+                if (ordinal < 0 || Double.isNaN(cantidades[ordinal])) {
+                    noSoportadas.add(moneda);
+                } else {
+                    resultados.put(moneda, cantidades[ordinal]);
+                }
             }
-        } catch (ExecutionException e) {
-            log.error("Error al ejecutar la conversión asíncrona", e);
-            throw e;
         }
+        
+        Map<String, Object> respuesta = estadoTasas(snapshot);
+        respuesta.put("monedaOrigen", monedaOrigen);
+        respuesta.put("cantidadOrigen", cantidad);
+        respuesta.put("resultados", resultados);
+        if (!noSoportadas.isEmpty()) {
+            respuesta.put("monedasNoSoportadas", noSoportadas);
+        }
+        return respuesta;
     }
     
     /**
@@ -125,45 +328,60 @@ public class ConversionService {
      * @param cantidad Cantidad a convertir
      * @return Resultado de la conversión
      * @throws IOException En caso de error en la comunicación con la API
+     * @throws IllegalArgumentException Si algún símbolo no es válido
      */
     public double convertirCripto(String criptomoneda, String monedaFiat, double cantidad) throws IOException {
         try {
-            log.debug("Iniciando conversión de {} {} a {}", cantidad, criptomoneda, monedaFiat);
-            
-            JsonObject json = clienteCoinMarketCap.obtenerTasaConversion(criptomoneda, monedaFiat);
-            log.debug("Respuesta de CoinMarketCap: {}", json);
-            
-            // Estructura del JSON de la respuesta para cryptocurrency/quotes/latest
-            double tasaConversion = extraerTasaConversion(json, criptomoneda, monedaFiat);
-            
-            double resultado = cantidad * tasaConversion;
-            
-            log.debug("Conversión exitosa: {} {} = {} {} (tasa: {})",
-                    cantidad, criptomoneda, resultado, monedaFiat, tasaConversion);
-            
-            // Registrar en el historial
-            registrarConversion(criptomoneda, monedaFiat, cantidad, resultado, tasaConversion, TipoConversion.CRIPTO);
-            
-            return resultado;
-        } catch (Exception e) {
-            log.error("Error al procesar la respuesta de CoinMarketCap: {}", e.getMessage(), e);
-            throw new IOException("Error en la conversión de criptomoneda: " + e.getMessage());
+            return convertirCriptoAsync(criptomoneda, monedaFiat, cantidad).get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) causa;
+            }
+            throw causa instanceof IOException ? (IOException) causa : new IOException(causa.getMessage(), causa);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Conversión de criptomoneda interrumpida", e);
         }
     }
     
     /**
-     * Extrae la tasa de conversión de la respuesta JSON de CoinMarketCap
+     * Convierte una criptomoneda a una moneda fiduciaria sin bloquear el hilo que llama
+     * @param criptomoneda Símbolo de la criptomoneda (ej. BTC)
+     * @param monedaFiat Símbolo de la moneda fiduciaria (ej. USD)
+     * @param cantidad Cantidad a convertir
+     * @return Future con el resultado de la conversión; falla con IOException si no hay cotización
+     * y con IllegalArgumentException si algún símbolo no es válido
      */
-    private double extraerTasaConversion(JsonObject json, String criptomoneda, String monedaFiat) {
-        return json.getAsJsonObject("data")
-            .getAsJsonObject(criptomoneda)
-            .getAsJsonObject("quote")
-            .getAsJsonObject(monedaFiat)
-            .get("price").getAsDouble();
+    public CompletableFuture<Double> convertirCriptoAsync(String criptomoneda, String monedaFiat, double cantidad) {
+        log.debug("Iniciando conversión de {} {} a {}", cantidad, criptomoneda, monedaFiat);
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        
+        // Las criptomonedas del listado se resuelven localmente; el resto se agrupa con otras
+        // consultas concurrentes en una sola llamada a CoinMarketCap
+        OptionalDouble precioCache = cachePreciosCripto.obtenerPrecio(criptomoneda, monedaFiat);
+        CompletableFuture<Double> precio = precioCache.isPresent()
+                ? CompletableFuture.completedFuture(precioCache.getAsDouble())
+                : agrupadorCotizaciones.obtenerPrecio(criptomoneda, monedaFiat);
+        
+        return precio.handle((tasaConversion, error) -> {
+            if (error != null) {
+                Throwable causa = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (causa instanceof IllegalArgumentException) {
+                    log.debug("Conversión de criptomoneda rechazada: {}", causa.getMessage());
+                    throw new CompletionException(causa);
+                }
+                log.error("Error al procesar la respuesta de CoinMarketCap: {}", causa.getMessage(), causa);
+                throw new CompletionException(new IOException("Error en la conversión de criptomoneda: " + causa.getMessage()));
+            }
+            return aplicarConversion(criptomoneda, monedaFiat, cantidad, tasaConversion, TipoConversion.CRIPTO);
+        }).whenComplete((resultado, error) ->
+                muestra.stop(temporizadorConversion(TipoConversion.CRIPTO, error == null)));
     }
     
     /**
-     * Registra una conversión en el historial
+     * Registra una conversión en el historial. La escritura se delega al escritor
+     * asíncrono, por lo que la conversión no espera a la base de datos
      */
     private HistorialConversion registrarConversion(
             String monedaOrigen, 
@@ -173,20 +391,44 @@ public class ConversionService {
             double tasaCambio, 
             TipoConversion tipoConversion) {
         
-        HistorialConversion historial = HistorialConversion.builder()
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        HistorialConversion historial = crearHistorial(monedaOrigen, monedaDestino, cantidadOrigen,
+                cantidadDestino, tasaCambio, tipoConversion, LocalDateTime.now());
+        
+        escritorHistorial.encolar(historial);
+        estadisticas.registrar(monedaOrigen, tipoConversion.name());
+        log.debug("Conversión encolada para el historial");
+        
+        muestra.stop(meterRegistry.timer("conversiones.registro", "tipo", tipoConversion.name()));
+        return historial;
+    }
+    
+    private static HistorialConversion crearHistorial(
+            String monedaOrigen,
+            String monedaDestino,
+            double cantidadOrigen,
+            double cantidadDestino,
+            double tasaCambio,
+            TipoConversion tipoConversion,
+            LocalDateTime fechaHora) {
+        
+        return HistorialConversion.builder()
                 .monedaOrigen(monedaOrigen)
                 .monedaDestino(monedaDestino)
                 .cantidadOrigen(cantidadOrigen)
                 .cantidadDestino(cantidadDestino)
                 .tasaCambio(tasaCambio)
-                .fechaHora(LocalDateTime.now())
+                .fechaHora(fechaHora)
                 .tipoConversion(tipoConversion.name())
                 .build();
-        
-        historialRepository.save(historial);
-        log.debug("Conversión guardada en historial con ID: {}", historial.getId());
-        
-        return historial;
+    }
+    
+    /**
+     * Obtiene la versión del historial de conversiones, que cambia con cada conversión registrada
+     * @return Versión basada en la marca de agua del historial
+     */
+    public VersionDatos versionHistorial() {
+        return estadisticas.version();
     }
     
     /**
@@ -196,96 +438,49 @@ public class ConversionService {
     public List<HistorialConversion> obtenerUltimasConversiones() {
         log.debug("Obteniendo últimas 10 conversiones del historial");
         List<HistorialConversion> historial = historialRepository.findTop10ByOrderByFechaHoraDesc();
+        
+        // Incluir las conversiones que aún no se han escrito para que el usuario vea la suya de inmediato
+        List<HistorialConversion> pendientes = escritorHistorial.pendientes();
+        if (!pendientes.isEmpty()) {
+            historial.addAll(pendientes);
+            historial.sort((a, b) -> b.getFechaHora().compareTo(a.getFechaHora()));
+            historial = new ArrayList<>(historial.subList(0, Math.min(10, historial.size())));
+        }
         log.debug("Se encontraron {} conversiones recientes", historial.size());
         return historial;
     }
     
     /**
-     * Obtiene el historial de todas las conversiones
-     * @return Lista con todas las conversiones
+     * Recorre todas las conversiones del historial sin cargarlas completas en memoria.
+     * Cada conversión se separa del contexto de persistencia tras entregarla al consumidor
+     * @param consumidor Función que procesa cada conversión (por ejemplo, escribirla en la respuesta)
      */
-    public List<HistorialConversion> obtenerTodasLasConversiones() {
-        log.debug("Obteniendo todas las conversiones del historial");
-        List<HistorialConversion> historial = historialRepository.findAll();
-        log.debug("Se encontraron {} conversiones en total", historial.size());
-        return historial;
+    @Transactional(readOnly = true)
+    public void recorrerHistorial(Consumer<HistorialConversion> consumidor) {
+        log.debug("Recorriendo todo el historial de conversiones");
+        try (Stream<HistorialConversion> historial = historialRepository.recorrerTodo()) {
+            historial.forEach(conversion -> {
+                consumidor.accept(conversion);
+                entityManager.detach(conversion);
+            });
+        }
     }
     
     /**
-     * Obtiene el historial de conversiones por tipo (MONEDA o CRIPTO)
+     * Obtiene una página del historial de conversiones por tipo (MONEDA o CRIPTO),
+     * de la más reciente a la más antigua
      * @param tipo Tipo de conversión ("MONEDA" o "CRIPTO")
+     * @param cursor Cursor de la última conversión de la página anterior, o null para la primera página
+     * @param limite Número máximo de conversiones de la página
      * @return Lista con el historial de conversiones del tipo especificado
      */
-    public List<HistorialConversion> obtenerHistorialPorTipo(String tipo) {
-        log.debug("Obteniendo historial de conversiones de tipo: {}", tipo);
-        List<HistorialConversion> historial = historialRepository.findByTipoConversionOrderByFechaHoraDesc(tipo);
+    public List<HistorialConversion> obtenerHistorialPorTipo(String tipo, CursorHistorial cursor, int limite) {
+        log.debug("Obteniendo historial de conversiones de tipo: {} (cursor: {})", tipo, cursor);
+        PageRequest pagina = PageRequest.of(0, limite);
+        List<HistorialConversion> historial = cursor == null
+                ? historialRepository.buscarPrimeraPaginaPorTipo(tipo, pagina)
+                : historialRepository.buscarPaginaPorTipoAntesDe(tipo, cursor.getFechaHora(), cursor.getId(), pagina);
         log.debug("Se encontraron {} conversiones de tipo {}", historial.size(), tipo);
         return historial;
     }
-    
-    /**
-     * Obtiene el historial de conversiones entre dos monedas específicas
-     * @param monedaOrigen Moneda de origen
-     * @param monedaDestino Moneda de destino
-     * @return Lista con el historial de conversiones entre las monedas especificadas
-     */
-    public List<HistorialConversion> obtenerHistorialPorMonedas(String monedaOrigen, String monedaDestino) {
-        log.debug("Obteniendo historial de conversiones entre {} y {}", monedaOrigen, monedaDestino);
-        
-        // Buscar conversiones directas (origen -> destino)
-        List<HistorialConversion> historialDirecto = historialRepository
-                .findByMonedaOrigenAndMonedaDestinoOrderByFechaHoraDesc(monedaOrigen, monedaDestino);
-        
-        // Si hay suficientes datos directos, no es necesario buscar inversos
-        if (historialDirecto.size() >= 7) {
-            log.debug("Se encontraron {} conversiones directas", historialDirecto.size());
-            return historialDirecto;
-        }
-        
-        // Buscar también conversiones inversas (destino -> origen) para complementar
-        List<HistorialConversion> historialInverso = historialRepository
-                .findByMonedaOrigenAndMonedaDestinoOrderByFechaHoraDesc(monedaDestino, monedaOrigen);
-        
-        // Convertir las conversiones inversas a directas
-        List<HistorialConversion> historialInversoConvertido = convertirConversionesInversas(
-                historialInverso, monedaOrigen, monedaDestino);
-        
-        // Combinar ambas listas
-        historialDirecto.addAll(historialInversoConvertido);
-        
-        // Ordenar por fecha (más reciente primero)
-        historialDirecto.sort((a, b) -> b.getFechaHora().compareTo(a.getFechaHora()));
-        
-        log.debug("Se encontraron {} conversiones en total (directas + inversas convertidas)", 
-                historialDirecto.size());
-                
-        return historialDirecto;
-    }
-    
-    /**
-     * Convierte conversiones inversas a directas (invirtiendo la tasa de cambio)
-     */
-    private List<HistorialConversion> convertirConversionesInversas(
-            List<HistorialConversion> historialInverso, 
-            String monedaOrigenDeseada, 
-            String monedaDestinoDeseada) {
-        
-        return historialInverso.stream()
-                .map(h -> {
-                    // Invertir la tasa de cambio (1/tasa) para que sea equivalente
-                    double tasaInvertida = 1.0 / h.getTasaCambio();
-                    
-                    return HistorialConversion.builder()
-                            .id(h.getId())
-                            .monedaOrigen(monedaOrigenDeseada)
-                            .monedaDestino(monedaDestinoDeseada)
-                            .cantidadOrigen(h.getCantidadDestino())
-                            .cantidadDestino(h.getCantidadOrigen())
-                            .tasaCambio(tasaInvertida)
-                            .fechaHora(h.getFechaHora())
-                            .tipoConversion(h.getTipoConversion())
-                            .build();
-                })
-                .collect(Collectors.toList());
-    }
 } 
\ No newline at end of file
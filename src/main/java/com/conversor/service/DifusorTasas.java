@@ -0,0 +1,323 @@
+package com.conversor.service;
+
+import com.conversor.model.SnapshotTasas;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Difunde las tasas de los pares suscritos mediante Server-Sent Events. Los suscriptores
+ * con el mismo conjunto de pares comparten un grupo: con cada instantánea publicada se
+ * calcula una sola vez qué tasas cambiaron en el grupo y el mensaje se serializa una vez
+ * para todos sus clientes. Las conexiones inactivas no ocupan hilos (servlet asíncrono).
+ * Los cálculos se hacen en un hilo dedicado para no bloquear al actualizador de tasas y
+ * los envíos se reparten en un pool pequeño. Un cliente lento solo tiene un envío en curso:
+ * los eventos que llegan mientras tanto se omiten y, al terminar, recibe las tasas vigentes
+ * completas, de modo que no retrasa a los demás ni pierde cambios.
+ */
+@Slf4j
+@Component
+public class DifusorTasas {
+
+    private static final String EVENTO_TASAS = "tasas";
+    private static final Pattern FORMATO_PAR = Pattern.compile("[A-Z]{3}-[A-Z]{3}");
+
+    private final MotorTasas motorTasas;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMillis;
+    private final long latidoSegundos;
+    private final int maxPares;
+    private final ScheduledExecutorService difusor;
+    private final ExecutorService envios;
+
+    /**
+     * Grupos de suscriptores indexados por su conjunto de pares ("EUR-USD,USD-MXN")
+     */
+    private final Map<String, Grupo> grupos = new ConcurrentHashMap<>();
+
+    public DifusorTasas(
+            MotorTasas motorTasas,
+            ObjectMapper objectMapper,
+            @Value("${tasas.stream.timeout-millis:1800000}") long timeoutMillis,
+            @Value("${tasas.stream.latido-segundos:30}") long latidoSegundos,
+            @Value("${tasas.stream.max-pares:100}") int maxPares,
+            @Value("${tasas.stream.hilos-envio:4}") int hilosEnvio) {
+        this.motorTasas = motorTasas;
+        this.objectMapper = objectMapper;
+        this.timeoutMillis = timeoutMillis;
+        this.latidoSegundos = latidoSegundos;
+        this.maxPares = maxPares;
+        this.difusor = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "difusor-tasas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        AtomicInteger contador = new AtomicInteger();
+        this.envios = Executors.newFixedThreadPool(hilosEnvio, tarea -> {
+            Thread hilo = new Thread(tarea, "difusor-envio-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Programa los latidos que mantienen abiertas las conexiones y detectan clientes desconectados
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        difusor.scheduleAtFixedRate(this::enviarLatidos, latidoSegundos, latidoSegundos, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        difusor.shutdownNow();
+        envios.shutdownNow();
+        grupos.values().forEach(grupo -> grupo.suscriptores.forEach(suscriptor -> suscriptor.emisor.complete()));
+        grupos.clear();
+    }
+
+    /**
+     * Suscribe un cliente a un conjunto de pares. Recibe de inmediato las tasas vigentes y,
+     * con cada nueva instantánea, solo las tasas que cambiaron
+     * @param pares Pares en formato "USD-EUR"
+     * @return Emisor SSE de la suscripción
+     * @throws IllegalArgumentException Si algún par no tiene el formato esperado o hay demasiados
+     */
+    public SseEmitter suscribir(Collection<String> pares) {
+        List<String> normalizados = normalizar(pares);
+        String clave = String.join(",", normalizados);
+        SseEmitter emisor = new SseEmitter(timeoutMillis);
+
+        Suscriptor[] nuevo = new Suscriptor[1];
+        grupos.compute(clave, (k, existente) -> {
+            Grupo destino = existente != null ? existente : new Grupo(clave, normalizados);
+            nuevo[0] = new Suscriptor(destino, emisor);
+            destino.suscriptores.add(nuevo[0]);
+            return destino;
+        });
+        Suscriptor suscriptor = nuevo[0];
+        emisor.onCompletion(() -> quitar(suscriptor));
+        emisor.onTimeout(() -> quitar(suscriptor));
+        emisor.onError(error -> quitar(suscriptor));
+
+        difusor.execute(() -> enviarInicial(suscriptor));
+        log.debug("Nueva suscripción a {} ({} grupos activos)", clave, grupos.size());
+        return emisor;
+    }
+
+    /**
+     * Programa la difusión de las tasas que cambiaron con la nueva instantánea
+     * @param snapshot Instantánea publicada por el {@link MotorTasas}
+     */
+    @EventListener
+    public void alPublicarInstantanea(SnapshotTasas snapshot) {
+        if (!grupos.isEmpty()) {
+            difusor.execute(() -> difundir(snapshot));
+        }
+    }
+
+    /**
+     * Envía a cada grupo las tasas que cambiaron respecto a lo último que se le envió.
+     * Cada par se calcula una sola vez aunque aparezca en varios grupos
+     */
+    private void difundir(SnapshotTasas snapshot) {
+        Map<String, Double> tasasPorPar = new HashMap<>();
+        int enviados = 0;
+        for (Grupo grupo : grupos.values()) {
+            Map<String, Double> cambios = new LinkedHashMap<>();
+            for (String par : grupo.pares) {
+                Double tasa = tasasPorPar.computeIfAbsent(par, p -> tasaPar(snapshot, p));
+                if (tasa != null && !tasa.equals(grupo.ultimas.get(par))) {
+                    cambios.put(par, tasa);
+                }
+            }
+            if (cambios.isEmpty()) {
+                continue;
+            }
+            grupo.ultimas.putAll(cambios);
+
+            SseEmitter.SseEventBuilder evento = crearEvento(snapshot, cambios);
+            if (evento != null) {
+                for (Suscriptor suscriptor : grupo.suscriptores) {
+                    if (enviar(suscriptor, evento, true)) {
+                        enviados++;
+                    }
+                }
+            }
+        }
+        log.debug("Tasas difundidas a {} suscriptores", enviados);
+    }
+
+    /**
+     * Envía a un suscriptor nuevo, o que omitió eventos, todas las tasas vigentes de sus pares
+     */
+    private void enviarInicial(Suscriptor suscriptor) {
+        Grupo grupo = suscriptor.grupo;
+        SnapshotTasas snapshot = motorTasas.snapshotActual();
+        if (snapshot == null) {
+            return;
+        }
+        Map<String, Double> tasas = new LinkedHashMap<>();
+        for (String par : grupo.pares) {
+            Double tasa = tasaPar(snapshot, par);
+            if (tasa != null) {
+                tasas.put(par, tasa);
+            }
+        }
+        if (grupo.suscriptores.size() == 1) {
+            // Grupo recién creado: lo enviado a su único cliente pasa a ser la referencia de los cambios
+            grupo.ultimas.putAll(tasas);
+        }
+        SseEmitter.SseEventBuilder evento = crearEvento(snapshot, tasas);
+        if (evento != null) {
+            enviar(suscriptor, evento, true);
+        }
+    }
+
+    private void enviarLatidos() {
+        SseEmitter.SseEventBuilder latido = SseEmitter.event().comment("latido");
+        grupos.values().forEach(grupo -> grupo.suscriptores.forEach(suscriptor -> enviar(suscriptor, latido, false)));
+    }
+
+    /**
+     * Encarga el envío al pool, salvo que el suscriptor aún tenga otro envío en curso. Si se
+     * omite un evento de tasas, el suscriptor recibe las tasas completas al terminar el envío
+     * @return true si el envío quedó encargado
+     */
+    private boolean enviar(Suscriptor suscriptor, SseEmitter.SseEventBuilder evento, boolean conTasas) {
+        if (!suscriptor.enviando.compareAndSet(false, true)) {
+            if (conTasas) {
+                suscriptor.desfasado = true;
+            }
+            return false;
+        }
+        try {
+            envios.execute(() -> {
+                try {
+                    suscriptor.emisor.send(evento);
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("Suscriptor desconectado de {}: {}", suscriptor.grupo.clave, e.getMessage());
+                    quitar(suscriptor);
+                    return;
+                } finally {
+                    suscriptor.enviando.set(false);
+                }
+                if (suscriptor.desfasado) {
+                    suscriptor.desfasado = false;
+                    difusor.execute(() -> enviarInicial(suscriptor));
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            suscriptor.enviando.set(false);
+            return false;
+        }
+    }
+
+    /**
+     * Serializa una sola vez el mensaje que reciben todos los clientes de un grupo
+     */
+    private SseEmitter.SseEventBuilder crearEvento(SnapshotTasas snapshot, Map<String, Double> tasas) {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("tasasActualizadasUnix", snapshot.getActualizadoUnix());
+        datos.put("tasas", tasas);
+        try {
+            return SseEmitter.event()
+                    .name(EVENTO_TASAS)
+                    .id(snapshot.getVersion())
+                    .data(objectMapper.writeValueAsString(datos));
+        } catch (JsonProcessingException e) {
+            log.error("No se pudo serializar el evento de tasas", e);
+            return null;
+        }
+    }
+
+    private void quitar(Suscriptor suscriptor) {
+        grupos.computeIfPresent(suscriptor.grupo.clave, (k, grupo) -> {
+            grupo.suscriptores.remove(suscriptor);
+            return grupo.suscriptores.isEmpty() ? null : grupo;
+        });
+    }
+
+    private List<String> normalizar(Collection<String> pares) {
+        List<String> normalizados = new ArrayList<>();
+        for (String par : pares) {
+            String normalizado = par.trim().toUpperCase();
+            if (!FORMATO_PAR.matcher(normalizado).matches()) {
+                throw new IllegalArgumentException("Par inválido: " + par);
+            }
+            if (!normalizados.contains(normalizado)) {
+                normalizados.add(normalizado);
+            }
+        }
+        if (normalizados.isEmpty() || normalizados.size() > maxPares) {
+            throw new IllegalArgumentException("Se deben indicar entre 1 y " + maxPares + " pares");
+        }
+        normalizados.sort(null);
+        return normalizados;
+    }
+
+    private static Double tasaPar(SnapshotTasas snapshot, String par) {
+        String monedaOrigen = par.substring(0, 3);
+        String monedaDestino = par.substring(4);
+        if (!snapshot.contiene(monedaOrigen) || !snapshot.contiene(monedaDestino)) {
+            return null;
+        }
+        return snapshot.tasaCruzada(monedaOrigen, monedaDestino);
+    }
+
+    /**
+     * Suscriptores de un mismo conjunto de pares. Las últimas tasas enviadas solo se
+     * modifican en el hilo difusor
+     */
+    private static final class Grupo {
+        private final String clave;
+        private final List<String> pares;
+        private final Set<Suscriptor> suscriptores = ConcurrentHashMap.newKeySet();
+        private final Map<String, Double> ultimas = new HashMap<>();
+
+        private Grupo(String clave, List<String> pares) {
+            this.clave = clave;
+            this.pares = pares;
+        }
+    }
+
+    /**
+     * Conexión de un cliente con su envío en curso, si lo hay
+     */
+    private static final class Suscriptor {
+        private final Grupo grupo;
+        private final SseEmitter emisor;
+        private final AtomicBoolean enviando = new AtomicBoolean();
+        private volatile boolean desfasado;
+
+        private Suscriptor(Grupo grupo, SseEmitter emisor) {
+            this.grupo = grupo;
+            this.emisor = emisor;
+        }
+    }
+}
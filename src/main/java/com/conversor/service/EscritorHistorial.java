@@ -0,0 +1,271 @@
+package com.conversor.service;
+
+import com.conversor.model.HistorialConversion;
+import com.conversor.repository.HistorialConversionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Escritor asíncrono del historial de conversiones. Las conversiones se encolan en una
+ * cola acotada y un hilo dedicado las inserta en lotes JDBC (Hibernate con
+ * hibernate.jdbc.batch_size e IDs de secuencia pooled), de modo que las solicitudes
+ * no esperan a la base de datos. Si la cola se llena, quien registra la conversión la
+ * escribe directamente (contrapresión) en lugar de descartarla. Los lotes que fallan se
+ * reintentan con espera exponencial antes de darlos por perdidos.
+ */
+@Slf4j
+@Component
+public class EscritorHistorial {
+
+    private final HistorialConversionRepository historialRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final AgregadorTasas agregadorTasas;
+    private final BlockingQueue<HistorialConversion> cola;
+    private final int tamanoLote;
+    private final long intervaloMillis;
+    private final long esperaColaLlenaMillis;
+    private final int maxReintentos;
+    private final long esperaReintentoMillis;
+    private final Thread hiloEscritor;
+    private final Timer tiempoInsercion;
+    private final Timer tiempoAgregados;
+
+    /**
+     * Quien encola toma el bloqueo de lectura; {@link #detener()} toma el de escritura para
+     * cerrar la admisión, de modo que ninguna conversión entra en la cola tras vaciarla
+     */
+    private final ReentrantReadWriteLock admision = new ReentrantReadWriteLock();
+    private volatile boolean activo = true;
+    private volatile List<HistorialConversion> loteEnEscritura = Collections.emptyList();
+
+    public EscritorHistorial(
+            HistorialConversionRepository historialRepository,
+            JdbcTemplate jdbcTemplate,
+            AgregadorTasas agregadorTasas,
+            @Value("${historial.escritura.capacidad-cola:10000}") int capacidadCola,
+            @Value("${historial.escritura.tamano-lote:500}") int tamanoLote,
+            @Value("${historial.escritura.intervalo-millis:500}") long intervaloMillis,
+            @Value("${historial.escritura.espera-cola-llena-millis:50}") long esperaColaLlenaMillis,
+            @Value("${historial.escritura.reintentos:3}") int maxReintentos,
+            @Value("${historial.escritura.espera-reintento-millis:200}") long esperaReintentoMillis,
+            MeterRegistry meterRegistry) {
+        this.historialRepository = historialRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.agregadorTasas = agregadorTasas;
+        this.cola = new ArrayBlockingQueue<>(capacidadCola);
+        this.tamanoLote = tamanoLote;
+        this.intervaloMillis = intervaloMillis;
+        this.esperaColaLlenaMillis = esperaColaLlenaMillis;
+        this.maxReintentos = maxReintentos;
+        this.esperaReintentoMillis = esperaReintentoMillis;
+        this.hiloEscritor = new Thread(this::procesarCola, "escritor-historial");
+        this.tiempoInsercion = meterRegistry.timer("historial.escritura", "etapa", "insercion");
+        this.tiempoAgregados = meterRegistry.timer("historial.escritura", "etapa", "agregados");
+        Gauge.builder("historial.cola", cola, BlockingQueue::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        alinearSecuencia();
+        hiloEscritor.start();
+    }
+
+    /**
+     * Reinicia la secuencia de IDs por encima del mayor ID existente. Las tablas creadas
+     * cuando el ID era IDENTITY ya tienen filas que una secuencia nueva volvería a asignar;
+     * en un reinicio normal solo se descartan los IDs reservados y no usados
+     */
+    private void alinearSecuencia() {
+        try {
+            Long maximo = jdbcTemplate.queryForObject("SELECT MAX(id) FROM historial_conversiones", Long.class);
+            if (maximo != null) {
+                jdbcTemplate.execute("ALTER SEQUENCE " + HistorialConversion.SECUENCIA
+                        + " RESTART WITH " + (maximo + HistorialConversion.TAMANO_ASIGNACION));
+                log.debug("Secuencia de historial reiniciada por encima del ID {}", maximo);
+            }
+        } catch (Exception e) {
+            log.warn("No se pudo alinear la secuencia del historial: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Deja de aceptar trabajo en segundo plano y escribe todo lo pendiente antes de cerrar
+     */
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        // Sin interrumpir el hilo: una interrupción durante la escritura puede cerrar el archivo de H2.
+        // El hilo termina solo en cuanto vence su espera en la cola
+        admision.writeLock().lock();
+        try {
+            activo = false;
+        } finally {
+            admision.writeLock().unlock();
+        }
+        hiloEscritor.join(TimeUnit.SECONDS.toMillis(10));
+
+        List<HistorialConversion> restantes = new ArrayList<>();
+        cola.drainTo(restantes);
+        if (!restantes.isEmpty()) {
+            log.info("Escribiendo {} conversiones pendientes antes de cerrar", restantes.size());
+            escribir(restantes);
+        }
+    }
+
+    /**
+     * Encola una conversión para escribirla en el próximo lote. Si la cola sigue llena
+     * tras una espera breve, la conversión se escribe en el hilo que llama
+     * @param historial Conversión a registrar
+     */
+    public void encolar(HistorialConversion historial) {
+        admision.readLock().lock();
+        try {
+            if (activo && cola.offer(historial, esperaColaLlenaMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            admision.readLock().unlock();
+        }
+        log.debug("Cola de historial llena o detenida, escribiendo la conversión directamente");
+        escribir(Collections.singletonList(historial));
+    }
+
+    /**
+     * Encola varias conversiones a la vez. Las que no caben en la cola tras una espera
+     * breve se escriben juntas en un solo lote en el hilo que llama
+     * @param conversiones Conversiones a registrar
+     */
+    public void encolarTodas(List<HistorialConversion> conversiones) {
+        int encoladas = 0;
+        admision.readLock().lock();
+        try {
+            while (activo && encoladas < conversiones.size()
+                    && cola.offer(conversiones.get(encoladas), esperaColaLlenaMillis, TimeUnit.MILLISECONDS)) {
+                encoladas++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            admision.readLock().unlock();
+        }
+        if (encoladas < conversiones.size()) {
+            log.debug("Cola de historial llena o detenida, escribiendo {} conversiones directamente",
+                    conversiones.size() - encoladas);
+            escribir(new ArrayList<>(conversiones.subList(encoladas, conversiones.size())));
+        }
+    }
+
+    /**
+     * Obtiene las conversiones aceptadas que todavía no están confirmadas en la base de datos
+     * @return Copia de las conversiones pendientes de escritura
+     */
+    public List<HistorialConversion> pendientes() {
+        List<HistorialConversion> pendientes = new ArrayList<>(loteEnEscritura);
+        pendientes.addAll(cola);
+        return pendientes;
+    }
+
+    /**
+     * Bucle del hilo escritor: acumula hasta completar un lote o hasta que vence el intervalo
+     */
+    private void procesarCola() {
+        List<HistorialConversion> lote = new ArrayList<>(tamanoLote);
+        while (activo) {
+            try {
+                HistorialConversion primero = cola.poll(intervaloMillis, TimeUnit.MILLISECONDS);
+                if (primero == null) {
+                    continue;
+                }
+                lote.add(primero);
+                long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervaloMillis);
+                while (lote.size() < tamanoLote) {
+                    cola.drainTo(lote, tamanoLote - lote.size());
+                    long restante = limite - System.nanoTime();
+                    if (lote.size() >= tamanoLote || restante <= 0) {
+                        break;
+                    }
+                    HistorialConversion siguiente = cola.poll(restante, TimeUnit.NANOSECONDS);
+                    if (siguiente != null) {
+                        lote.add(siguiente);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (!lote.isEmpty()) {
+                List<HistorialConversion> aEscribir = new ArrayList<>(lote);
+                loteEnEscritura = aEscribir;
+                escribir(aEscribir);
+                loteEnEscritura = Collections.emptyList();
+                lote.clear();
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Inserta un lote de conversiones en una sola transacción; Hibernate agrupa los INSERT
+     * en lotes JDBC del tamaño configurado en hibernate.jdbc.batch_size. La inserción y la
+     * actualización de los agregados se reintentan por separado para no duplicar filas
+     */
+    private void escribir(List<HistorialConversion> lote) {
+        boolean guardado = conReintentos("guardar", lote.size(), () -> {
+            // Un intento fallido ya asignó IDs que la transacción revertida no llegó a usar
+            lote.forEach(conversion -> conversion.setId(null));
+            tiempoInsercion.record(() -> historialRepository.saveAll(lote));
+        });
+        if (!guardado) {
+            return;
+        }
+        log.debug("Se guardaron {} conversiones en el historial", lote.size());
+        conReintentos("agregar", lote.size(), () -> tiempoAgregados.record(() -> agregadorTasas.registrarConversiones(lote)));
+    }
+
+    /**
+     * Ejecuta una operación reintentándola con espera exponencial (base * 2^intento)
+     * @return true si alguna ejecución terminó sin errores
+     */
+    private boolean conReintentos(String operacion, int cantidad, Runnable accion) {
+        for (int intento = 0; ; intento++) {
+            try {
+                accion.run();
+                return true;
+            } catch (Exception e) {
+                if (intento >= maxReintentos) {
+                    log.error("No se pudieron {} {} conversiones del historial tras {} intentos",
+                            operacion, cantidad, intento + 1, e);
+                    return false;
+                }
+                long espera = esperaReintentoMillis << intento;
+                log.warn("Error al {} {} conversiones del historial: {}. Reintentando en {} ms",
+                        operacion, cantidad, e.getMessage(), espera);
+                try {
+                    Thread.sleep(espera);
+                } catch (InterruptedException interrumpido) {
+                    Thread.currentThread().interrupt();
+                    log.error("Se abandonan {} conversiones del historial por interrupción", cantidad);
+                    return false;
+                }
+            }
+        }
+    }
+}
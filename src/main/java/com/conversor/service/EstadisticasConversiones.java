@@ -0,0 +1,101 @@
+package com.conversor.service;
+
+import com.conversor.model.VersionDatos;
+import com.conversor.repository.HistorialConversionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores en memoria de conversiones por moneda de origen y por tipo de conversión.
+ * Se reconstruyen al arrancar con una única consulta agrupada y luego se incrementan a
+ * medida que se registran conversiones, de modo que los gráficos de distribución no
+ * necesitan consultar la base de datos. La cantidad total de conversiones registradas
+ * sirve además como marca de agua del historial para versionar las respuestas de la API;
+ * se combina con el instante de arranque porque las conversiones aún no escritas en la base
+ * de datos al detenerse no se vuelven a contar, y la misma marca podría repetirse.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EstadisticasConversiones {
+
+    private final HistorialConversionRepository historialRepository;
+
+    private final Map<String, LongAdder> porMonedaOrigen = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> porTipo = new ConcurrentHashMap<>();
+    private final AtomicLong marcaAgua = new AtomicLong();
+    private final String arranque = Long.toHexString(System.currentTimeMillis());
+    private volatile long ultimaModificacionMillis = System.currentTimeMillis();
+
+    /**
+     * Carga los contadores iniciales a partir del historial existente
+     */
+    @PostConstruct
+    public void reconstruir() {
+        List<Object[]> filas = historialRepository.contarPorMonedaOrigenYTipo();
+        for (Object[] fila : filas) {
+            String monedaOrigen = (String) fila[0];
+            String tipo = (String) fila[1];
+            long cantidad = ((Number) fila[2]).longValue();
+            porMonedaOrigen.computeIfAbsent(monedaOrigen, k -> new LongAdder()).add(cantidad);
+            marcaAgua.addAndGet(cantidad);
+            if (tipo != null) {
+                porTipo.computeIfAbsent(tipo, k -> new LongAdder()).add(cantidad);
+            }
+        }
+        log.debug("Contadores de conversiones reconstruidos: {} monedas de origen", porMonedaOrigen.size());
+    }
+
+    /**
+     * Registra una nueva conversión en los contadores
+     * @param monedaOrigen Moneda de origen de la conversión
+     * @param tipo Tipo de conversión ("MONEDA" o "CRIPTO")
+     */
+    public void registrar(String monedaOrigen, String tipo) {
+        porMonedaOrigen.computeIfAbsent(monedaOrigen, k -> new LongAdder()).increment();
+        porTipo.computeIfAbsent(tipo, k -> new LongAdder()).increment();
+        marcaAgua.incrementAndGet();
+        ultimaModificacionMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Obtiene la versión del historial: cambia con cada conversión registrada
+     * @return Versión basada en el arranque del proceso y la cantidad total de conversiones
+     */
+    public VersionDatos version() {
+        return new VersionDatos("h" + arranque + '.' + Long.toHexString(marcaAgua.get()), ultimaModificacionMillis);
+    }
+
+    /**
+     * Obtiene las monedas de origen más utilizadas
+     * @param limite Número máximo de monedas a devolver
+     * @return Mapa ordenado de mayor a menor cantidad de conversiones
+     */
+    public Map<String, Long> monedasMasUsadas(int limite) {
+        Map<String, Long> resultado = new LinkedHashMap<>();
+        porMonedaOrigen.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue().sum()))
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(limite)
+                .forEach(e -> resultado.put(e.getKey(), e.getValue()));
+        return resultado;
+    }
+
+    /**
+     * Obtiene la cantidad de conversiones de un tipo
+     * @param tipo Tipo de conversión ("MONEDA" o "CRIPTO")
+     */
+    public long contarPorTipo(String tipo) {
+        LongAdder contador = porTipo.get(tipo);
+        return contador == null ? 0L : contador.sum();
+    }
+}
@@ -1,263 +1,208 @@
 package com.conversor.service;
 
-import com.conversor.model.HistorialConversion;
+import com.conversor.model.AgregadoTasa;
+import com.conversor.model.Granularidad;
 import com.conversor.model.TipoConversion;
-import com.conversor.repository.HistorialConversionRepository;
+import com.conversor.model.VersionDatos;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
- * Servicio para generar datos para gráficos
+ * Servicio para generar datos para gráficos. Los conjuntos de datos se guardan en
+ * {@link CacheGraficos} y solo se recalculan cuando llegan datos nuevos de su par o tipo
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class GraficosService {
 
-    private final HistorialConversionRepository historialRepository;
+    private final AgregadorTasas agregadorTasas;
+    private final EstadisticasConversiones estadisticas;
+    private final SerieTasas serieTasas;
+    private final CacheGraficos cacheGraficos;
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
-    private static final Random RANDOM = new Random();
+    private static final int DIAS_MAXIMOS_POR_HORA = 2;
+    private static final String[] SIN_ETIQUETAS = {};
+
+    @Value("${graficos.ventana-dias:7}")
+    private int ventanaDias;
+
+    @Value("${graficos.dias-maximos:90}")
+    private int diasMaximos;
 
     /**
-     * Obtiene datos históricos de tasas de cambio para un par de monedas
+     * Obtiene datos históricos de tasas de cambio para un par de monedas a partir de los
+     * agregados OHLC. Hasta {@value #DIAS_MAXIMOS_POR_HORA} días se usan intervalos por hora;
+     * para rangos mayores, intervalos diarios. Los intervalos sin agregados se completan con la
+     * serie de instantáneas de tasas
      * @param monedaOrigen Moneda de origen
      * @param monedaDestino Moneda de destino
+     * @param dias Número de días a mostrar, o null para usar la ventana configurada
      * @return Mapa con datos para el gráfico
      */
-    public Map<String, Object> obtenerDatosHistoricosTasas(String monedaOrigen, String monedaDestino) {
-        log.debug("Obteniendo datos históricos de tasas para {} -> {}", monedaOrigen, monedaDestino);
-        
-        // Obtener historial de conversiones entre las monedas especificadas
-        List<HistorialConversion> historial = historialRepository
-                .findByMonedaOrigenAndMonedaDestinoOrderByFechaHoraDesc(monedaOrigen, monedaDestino);
-        
-        log.debug("Conversiones directas encontradas: {}", historial.size());
-        
-        // Si no hay suficientes datos directos, buscar también conversiones inversas
-        if (historial.size() < 7) {
-            List<HistorialConversion> historialInverso = historialRepository
-                    .findByMonedaOrigenAndMonedaDestinoOrderByFechaHoraDesc(monedaDestino, monedaOrigen);
-            
-            log.debug("Conversiones inversas encontradas: {}", historialInverso.size());
-            
-            // Convertir las conversiones inversas a directas
-            List<HistorialConversion> historialInversoConvertido = historialInverso.stream()
-                    .map(h -> {
-                        double tasaInvertida = 1.0 / h.getTasaCambio();
-                        return HistorialConversion.builder()
-                                .id(h.getId())
-                                .monedaOrigen(monedaOrigen)
-                                .monedaDestino(monedaDestino)
-                                .cantidadOrigen(h.getCantidadDestino())
-                                .cantidadDestino(h.getCantidadOrigen())
-                                .tasaCambio(tasaInvertida)
-                                .fechaHora(h.getFechaHora())
-                                .tipoConversion(h.getTipoConversion())
-                                .build();
-                    })
-                    .collect(Collectors.toList());
-            
-            // Combinar ambas listas
-            historial.addAll(historialInversoConvertido);
-            
-            // Ordenar por fecha (más reciente primero)
-            historial.sort((a, b) -> b.getFechaHora().compareTo(a.getFechaHora()));
-            
-            log.debug("Total de conversiones después de combinar: {}", historial.size());
-        }
-        
-        // Crear mapa para evitar duplicados por fecha (tomando el más reciente)
-        Map<String, HistorialConversion> historialPorFecha = new HashMap<>();
-        for (HistorialConversion conversion : historial) {
-            String fechaKey = conversion.getFechaHora().toLocalDate().toString();
-            if (!historialPorFecha.containsKey(fechaKey)) {
-                historialPorFecha.put(fechaKey, conversion);
-            }
-        }
-        
-        log.debug("Días únicos en el historial: {}", historialPorFecha.size());
+    public Map<String, Object> obtenerDatosHistoricosTasas(String monedaOrigen, String monedaDestino, Integer dias) {
+        int rangoDias = acotarDias(dias);
+        Granularidad granularidad = granularidadPara(rangoDias);
+        LocalDateTime desde = inicioVentana(rangoDias, granularidad);
+        
+        // La clave incluye el inicio de la ventana y la versión de los datos del par, leída antes
+        // que ellos: una entrada calculada con datos anteriores nunca se sirve con una versión nueva
+        VersionDatos version = agregadorTasas.version(monedaOrigen, monedaDestino).y(serieTasas.version());
+        String clave = "historial-tasas|" + monedaOrigen + '|' + monedaDestino + '|' + rangoDias
+                + '|' + granularidad.inicioDe(desde) + '|' + version.getEtag();
+        String[] etiquetas = {
+                CacheGraficos.etiquetaPar(monedaOrigen, monedaDestino),
+                CacheGraficos.etiquetaPar(monedaDestino, monedaOrigen),
+                CacheGraficos.ETIQUETA_SERIE
+        };
+        return cacheGraficos.obtener(clave, etiquetas,
+                () -> calcularDatosHistoricosTasas(monedaOrigen, monedaDestino, granularidad, desde));
+    }
+    
+    private Map<String, Object> calcularDatosHistoricosTasas(String monedaOrigen, String monedaDestino,
+                                                             Granularidad granularidad, LocalDateTime desde) {
+        log.debug("Calculando datos históricos de tasas para {} -> {} desde {}", monedaOrigen, monedaDestino, desde);
         
-        // Generar datos faltantes para completar 7 días
-        List<HistorialConversion> historialCompleto = completarDatosFaltantes(
-                new ArrayList<>(historialPorFecha.values()), 
-                monedaOrigen, 
-                monedaDestino
-        );
+        // Agregados directos del par, indexados por inicio de intervalo
+        Map<LocalDateTime, AgregadoTasa> porIntervalo = new TreeMap<>();
+        agregadorTasas.obtenerAgregados(monedaOrigen, monedaDestino, granularidad, desde)
+                .forEach(a -> porIntervalo.put(a.getInicio(), a));
         
-        log.debug("Total de días después de completar datos faltantes: {}", historialCompleto.size());
+        log.debug("Intervalos directos encontrados: {}", porIntervalo.size());
         
-        // Ordenar cronológicamente
-        historialCompleto.sort(Comparator.comparing(HistorialConversion::getFechaHora));
+        // Completar los intervalos sin datos directos con los del par inverso
+        agregadorTasas.obtenerAgregados(monedaDestino, monedaOrigen, granularidad, desde)
+                .forEach(a -> porIntervalo.putIfAbsent(a.getInicio(), invertir(a)));
         
-        // Crear las etiquetas (fechas) y datos (tasas) para el gráfico
-        List<String> labels = new ArrayList<>();
-        List<Double> tasas = new ArrayList<>();
+        // Completar el resto con las instantáneas guardadas en la serie de tasas
+        Map<LocalDateTime, AgregadoTasa> desdeSerie = agregarSerie(monedaOrigen, monedaDestino, granularidad, desde);
+        desdeSerie.forEach(porIntervalo::putIfAbsent);
         
-        for (HistorialConversion conversion : historialCompleto) {
-            labels.add(conversion.getFechaHora().format(FORMATTER));
-            tasas.add(conversion.getTasaCambio());
-            log.debug("Punto de datos: {} - {}", conversion.getFechaHora().format(FORMATTER), conversion.getTasaCambio());
+        return crearResultado(new ArrayList<>(porIntervalo.values()), monedaOrigen, monedaDestino, granularidad);
+    }
+    
+    /**
+     * Obtiene la versión de los datos históricos de un par: cambia cuando se guardan nuevos
+     * agregados del par o de su inverso, cuando se anexa una instantánea a la serie o cuando la
+     * ventana avanza un intervalo
+     * @param monedaOrigen Moneda de origen
+     * @param monedaDestino Moneda de destino
+     * @param dias Número de días a mostrar, o null para usar la ventana configurada
+     * @return Versión con la que se construiría la respuesta de {@link #obtenerDatosHistoricosTasas}
+     */
+    public VersionDatos versionDatosHistoricosTasas(String monedaOrigen, String monedaDestino, Integer dias) {
+        int rangoDias = acotarDias(dias);
+        Granularidad granularidad = granularidadPara(rangoDias);
+        LocalDateTime inicio = granularidad.inicioDe(inicioVentana(rangoDias, granularidad));
+        return agregadorTasas.version(monedaOrigen, monedaDestino)
+                .y(serieTasas.version())
+                .conParametros(monedaOrigen, monedaDestino, rangoDias, inicio);
+    }
+    
+    /**
+     * Obtiene la versión de los datos de los gráficos de distribución
+     * @return Versión del historial de conversiones
+     */
+    public VersionDatos versionDistribuciones() {
+        return estadisticas.version();
+    }
+    
+    private int acotarDias(Integer dias) {
+        return Math.max(1, Math.min(dias == null ? ventanaDias : dias, diasMaximos));
+    }
+    
+    private static Granularidad granularidadPara(int rangoDias) {
+        return rangoDias <= DIAS_MAXIMOS_POR_HORA ? Granularidad.HORA : Granularidad.DIA;
+    }
+    
+    private static LocalDateTime inicioVentana(int rangoDias, Granularidad granularidad) {
+        return granularidad == Granularidad.DIA
+                ? LocalDate.now().minusDays(rangoDias - 1L).atStartOfDay()
+                : LocalDateTime.now().minusDays(rangoDias);
+    }
+    
+    /**
+     * Construye el mapa de datos del gráfico a partir de los agregados en orden cronológico
+     */
+    private Map<String, Object> crearResultado(List<AgregadoTasa> agregados, String monedaOrigen,
+                                               String monedaDestino, Granularidad granularidad) {
+        List<String> labels = new ArrayList<>(agregados.size());
+        List<Double> tasas = new ArrayList<>(agregados.size());
+        List<Double> apertura = new ArrayList<>(agregados.size());
+        List<Double> maximo = new ArrayList<>(agregados.size());
+        List<Double> minimo = new ArrayList<>(agregados.size());
+        List<Long> conteo = new ArrayList<>(agregados.size());
+        
+        for (AgregadoTasa agregado : agregados) {
+            labels.add(agregado.getInicio().format(FORMATTER));
+            tasas.add(agregado.getCierre());
+            apertura.add(agregado.getApertura());
+            maximo.add(agregado.getMaximo());
+            minimo.add(agregado.getMinimo());
+            conteo.add(agregado.getConteo());
         }
         
         Map<String, Object> result = new HashMap<>();
         result.put("labels", labels);
         result.put("tasas", tasas);
+        result.put("apertura", apertura);
+        result.put("maximo", maximo);
+        result.put("minimo", minimo);
+        result.put("conteo", conteo);
+        result.put("granularidad", granularidad.name());
         result.put("monedaOrigen", monedaOrigen);
         result.put("monedaDestino", monedaDestino);
         
         log.debug("Se generaron datos de gráfico con {} puntos", labels.size());
-        return result;
+        return Collections.unmodifiableMap(result);
     }
     
     /**
-     * Completa los datos faltantes para tener al menos 7 días de historial
-     * @param historicoDisponible Lista de conversiones históricas disponibles
-     * @param monedaOrigen Moneda de origen
-     * @param monedaDestino Moneda de destino
-     * @return Lista completa con al menos 7 días de historial
+     * Expresa un agregado del par inverso en términos del par directo (1/tasa)
      */
-    private List<HistorialConversion> completarDatosFaltantes(
-            List<HistorialConversion> historicoDisponible, 
-            String monedaOrigen, 
-            String monedaDestino) {
-        
-        // Si no hay datos históricos, crear datos simulados completamente
-        if (historicoDisponible.isEmpty()) {
-            return generarDatosSimulados(monedaOrigen, monedaDestino, 7);
-        }
-        
-        // Ordenar por fecha (más antiguo primero)
-        historicoDisponible.sort(Comparator.comparing(HistorialConversion::getFechaHora));
-        
-        // Obtener el rango de fechas
-        LocalDateTime fechaInicio = historicoDisponible.get(0).getFechaHora().toLocalDate().atStartOfDay();
-        LocalDateTime fechaFin = LocalDateTime.now().toLocalDate().atStartOfDay();
-        
-        // Si tenemos suficientes datos (7 días o más), retornar los datos existentes
-        if (historicoDisponible.size() >= 7) {
-            return historicoDisponible;
-        }
-        
-        // Crear un mapa de fechas existentes para evitar duplicados
-        Map<String, HistorialConversion> fechasExistentes = new HashMap<>();
-        for (HistorialConversion conversion : historicoDisponible) {
-            String fechaKey = conversion.getFechaHora().toLocalDate().toString();
-            fechasExistentes.put(fechaKey, conversion);
-        }
-        
-        // Completar con datos simulados para los días faltantes
-        List<HistorialConversion> resultado = new ArrayList<>(historicoDisponible);
-        
-        // Determinar la tasa base para simulaciones (usamos la última disponible o un valor por defecto)
-        double tasaBase = historicoDisponible.isEmpty() ? 1.0 : historicoDisponible.get(historicoDisponible.size() - 1).getTasaCambio();
-        
-        // Llenar datos faltantes hacia atrás desde fecha de inicio
-        LocalDateTime fechaActual = fechaInicio.minusDays(1);
-        int diasAgregados = 0;
-        
-        while (resultado.size() < 7 && diasAgregados < 6) {
-            String fechaKey = fechaActual.toLocalDate().toString();
-            if (!fechasExistentes.containsKey(fechaKey)) {
-                // Simular una pequeña variación en la tasa (±2%)
-                double variacion = 0.96 + (RANDOM.nextDouble() * 0.08); // Entre 0.96 y 1.04
-                double nuevaTasa = tasaBase * variacion;
-                
-                HistorialConversion nuevoHistorial = HistorialConversion.builder()
-                        .monedaOrigen(monedaOrigen)
-                        .monedaDestino(monedaDestino)
-                        .cantidadOrigen(1.0)
-                        .cantidadDestino(nuevaTasa)
-                        .tasaCambio(nuevaTasa)
-                        .fechaHora(fechaActual)
-                        .tipoConversion(TipoConversion.MONEDA.name())
-                        .build();
-                
-                resultado.add(nuevoHistorial);
-                fechasExistentes.put(fechaKey, nuevoHistorial);
-                diasAgregados++;
-            }
-            fechaActual = fechaActual.minusDays(1);
-        }
-        
-        // Llenar datos faltantes hacia adelante desde fecha de fin
-        fechaActual = fechaFin;
-        diasAgregados = 0;
-        
-        while (resultado.size() < 7 && diasAgregados < 6) {
-            String fechaKey = fechaActual.toLocalDate().toString();
-            if (!fechasExistentes.containsKey(fechaKey)) {
-                // Simular una pequeña variación en la tasa (±2%)
-                double variacion = 0.96 + (RANDOM.nextDouble() * 0.08); // Entre 0.96 y 1.04
-                double nuevaTasa = tasaBase * variacion;
-                
-                HistorialConversion nuevoHistorial = HistorialConversion.builder()
-                        .monedaOrigen(monedaOrigen)
-                        .monedaDestino(monedaDestino)
-                        .cantidadOrigen(1.0)
-                        .cantidadDestino(nuevaTasa)
-                        .tasaCambio(nuevaTasa)
-                        .fechaHora(fechaActual.plusHours(12)) // Al mediodía
-                        .tipoConversion(TipoConversion.MONEDA.name())
-                        .build();
-                
-                resultado.add(nuevoHistorial);
-                fechasExistentes.put(fechaKey, nuevoHistorial);
-                diasAgregados++;
-            }
-            fechaActual = fechaActual.minusDays(1);
-        }
-        
-        return resultado;
+    private static AgregadoTasa invertir(AgregadoTasa agregado) {
+        return AgregadoTasa.builder()
+                .monedaOrigen(agregado.getMonedaDestino())
+                .monedaDestino(agregado.getMonedaOrigen())
+                .granularidad(agregado.getGranularidad())
+                .inicio(agregado.getInicio())
+                .apertura(1.0 / agregado.getApertura())
+                .maximo(1.0 / agregado.getMinimo())
+                .minimo(1.0 / agregado.getMaximo())
+                .cierre(1.0 / agregado.getCierre())
+                .conteo(agregado.getConteo())
+                .fechaApertura(agregado.getFechaApertura())
+                .fechaCierre(agregado.getFechaCierre())
+                .build();
     }
     
     /**
-     * Genera datos simulados para un rango de días
-     * @param monedaOrigen Moneda de origen
-     * @param monedaDestino Moneda de destino
-     * @param dias Número de días a simular
-     * @return Lista de conversiones simuladas
+     * Agrupa en intervalos OHLC las tasas del par guardadas en la serie desde una fecha
      */
-    private List<HistorialConversion> generarDatosSimulados(String monedaOrigen, String monedaDestino, int dias) {
-        List<HistorialConversion> resultado = new ArrayList<>();
-        
-        // Generar una tasa base razonable según las monedas
-        double tasaBase = 1.0;
-        if ("USD".equals(monedaOrigen) && "EUR".equals(monedaDestino)) {
-            tasaBase = 0.93;
-        } else if ("EUR".equals(monedaOrigen) && "USD".equals(monedaDestino)) {
-            tasaBase = 1.08;
-        } else if ("BTC".equals(monedaOrigen)) {
-            tasaBase = 43000.0; // BTC a USD aproximado
-        }
-        
-        LocalDateTime fechaFin = LocalDateTime.now();
-        
-        for (int i = dias - 1; i >= 0; i--) {
-            LocalDateTime fecha = fechaFin.minusDays(i).withHour(12).withMinute(0).withSecond(0);
-            
-            // Simular una pequeña variación en la tasa (±3%)
-            double variacion = 0.97 + (RANDOM.nextDouble() * 0.06); // Entre 0.97 y 1.03
-            double tasa = tasaBase * variacion;
-            
-            HistorialConversion simulado = HistorialConversion.builder()
-                    .monedaOrigen(monedaOrigen)
-                    .monedaDestino(monedaDestino)
-                    .cantidadOrigen(1.0)
-                    .cantidadDestino(tasa)
-                    .tasaCambio(tasa)
-                    .fechaHora(fecha)
-                    .tipoConversion("MONEDA".equals(monedaOrigen) ? TipoConversion.MONEDA.name() : TipoConversion.CRIPTO.name())
-                    .build();
-            
-            resultado.add(simulado);
+    private Map<LocalDateTime, AgregadoTasa> agregarSerie(String monedaOrigen, String monedaDestino,
+                                                          Granularidad granularidad, LocalDateTime desde) {
+        ZoneId zona = ZoneId.systemDefault();
+        long desdeEpoch = granularidad.inicioDe(desde).atZone(zona).toEpochSecond();
+        Map<LocalDateTime, AgregadoTasa> resultado = new TreeMap<>();
+        for (SerieTasas.PuntoSerie punto : serieTasas.obtenerSerie(monedaOrigen, monedaDestino, desdeEpoch, Long.MAX_VALUE)) {
+            LocalDateTime fecha = LocalDateTime.ofInstant(Instant.ofEpochSecond(punto.getEpoch()), zona);
+            AgregadoTasa agregado = resultado.get(granularidad.inicioDe(fecha));
+            if (agregado == null) {
+                agregado = AgregadoTasa.nuevo(monedaOrigen, monedaDestino, granularidad, punto.getTasa(), fecha);
+                resultado.put(agregado.getInicio(), agregado);
+            } else {
+                agregado.incorporar(punto.getTasa(), fecha);
+            }
         }
-        
         return resultado;
     }
     
@@ -266,25 +211,15 @@ public class GraficosService {
      * @return Mapa con datos para el gráfico
      */
     public Map<String, Object> obtenerDatosDistribucionMonedas() {
+        return cacheGraficos.obtener(claveDistribucion("distribucion-monedas"), SIN_ETIQUETAS,
+                this::calcularDistribucionMonedas);
+    }
+    
+    private Map<String, Object> calcularDistribucionMonedas() {
         log.debug("Obteniendo distribución de conversiones por monedas");
         
-        // Obtener todas las conversiones
-        List<HistorialConversion> historial = historialRepository.findAll();
-        
-        // Contar ocurrencias de cada moneda de origen
-        Map<String, Long> distribucionOrigenTemp = historial.stream()
-                .collect(Collectors.groupingBy(HistorialConversion::getMonedaOrigen, Collectors.counting()));
-        
-        // Ordenar por cantidad de conversiones y tomar las 10 más frecuentes
-        Map<String, Long> distribucionOrigen = distribucionOrigenTemp.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(10)
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey, 
-                        Map.Entry::getValue, 
-                        (e1, e2) -> e1, 
-                        LinkedHashMap::new
-                ));
+        // Tomar las 10 monedas de origen más frecuentes desde los contadores en memoria
+        Map<String, Long> distribucionOrigen = estadisticas.monedasMasUsadas(10);
         
         // Crear listas para el gráfico
         List<String> labels = new ArrayList<>(distribucionOrigen.keySet());
@@ -295,7 +230,7 @@ public class GraficosService {
         result.put("data", data);
         
         log.debug("Se generaron datos de distribución con {} monedas", labels.size());
-        return result;
+        return Collections.unmodifiableMap(result);
     }
     
     /**
@@ -303,11 +238,16 @@ public class GraficosService {
      * @return Mapa con datos para el gráfico
      */
     public Map<String, Object> obtenerDatosDistribucionTipos() {
+        return cacheGraficos.obtener(claveDistribucion("distribucion-tipos"), SIN_ETIQUETAS,
+                this::calcularDistribucionTipos);
+    }
+    
+    private Map<String, Object> calcularDistribucionTipos() {
         log.debug("Obteniendo distribución de conversiones por tipo");
         
         // Contar conversiones por tipo
-        long conversionesMoneda = historialRepository.countByTipoConversion(TipoConversion.MONEDA.name());
-        long conversionesCripto = historialRepository.countByTipoConversion(TipoConversion.CRIPTO.name());
+        long conversionesMoneda = estadisticas.contarPorTipo(TipoConversion.MONEDA.name());
+        long conversionesCripto = estadisticas.contarPorTipo(TipoConversion.CRIPTO.name());
         
         // Crear listas para el gráfico
         List<String> labels = Arrays.asList("Monedas", "Criptomonedas");
@@ -319,6 +259,14 @@ public class GraficosService {
         
         log.debug("Se generaron datos de distribución por tipo: Monedas={}, Criptomonedas={}", 
                 conversionesMoneda, conversionesCripto);
-        return result;
+        return Collections.unmodifiableMap(result);
+    }
+    
+    /**
+     * La clave lleva la versión del historial, leída antes que los contadores. Como cambia con
+     * cada conversión, las entradas anteriores ya no se piden y salen de la caché por antigüedad
+     */
+    private String claveDistribucion(String grafico) {
+        return grafico + '|' + estadisticas.version().getEtag();
     }
 } 
\ No newline at end of file
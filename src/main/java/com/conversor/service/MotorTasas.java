@@ -0,0 +1,185 @@
+package com.conversor.service;
+
+import com.conversor.http.ClienteExchangeRate;
+import com.conversor.http.RespuestaLatest;
+import com.conversor.model.IndiceMonedas;
+import com.conversor.model.SnapshotTasas;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Motor de tasas en memoria. Mantiene una instantánea de tasas con base USD
+ * obtenida del endpoint latest y resuelve cualquier par de monedas fiduciarias
+ * localmente, sin consultar el endpoint pair en cada conversión. La instantánea se
+ * publica mediante una referencia atómica, por lo que los lectores siempre ven un
+ * conjunto de tasas consistente.
+ */
+@Slf4j
+@Component
+public class MotorTasas {
+
+    static final String MONEDA_BASE = "USD";
+
+    private final ClienteExchangeRate clienteExchangeRate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long toleranciaObsoletaSegundos;
+
+    private final AtomicReference<SnapshotTasas> snapshot = new AtomicReference<>();
+    private CompletableFuture<SnapshotTasas> cargaInicial;
+
+    public MotorTasas(ClienteExchangeRate clienteExchangeRate,
+                      ApplicationEventPublisher eventPublisher,
+                      @Value("${tasas.obsoleta.tolerancia-segundos:300}") long toleranciaObsoletaSegundos) {
+        this.clienteExchangeRate = clienteExchangeRate;
+        this.eventPublisher = eventPublisher;
+        this.toleranciaObsoletaSegundos = toleranciaObsoletaSegundos;
+    }
+
+    /**
+     * Obtiene la instantánea publicada. Las lecturas nunca esperan a la API salvo en el
+     * arranque en frío, cuando todavía no se ha publicado ninguna instantánea
+     * @return Instantánea de tasas con base USD
+     * @throws IOException Si no es posible obtener las tasas desde la API
+     */
+    public SnapshotTasas obtenerSnapshot() throws IOException {
+        SnapshotTasas actual = snapshot.get();
+        if (actual != null) {
+            return actual;
+        }
+        try {
+            return obtenerSnapshotAsync().get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            throw causa instanceof IOException ? (IOException) causa : new IOException(causa.getMessage(), causa);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Carga de tasas interrumpida", e);
+        }
+    }
+
+    /**
+     * Obtiene la instantánea publicada sin bloquear el hilo que llama. En el arranque en frío
+     * todas las llamadas comparten una única descarga asíncrona
+     * @return Future con la instantánea de tasas con base USD
+     */
+    public CompletableFuture<SnapshotTasas> obtenerSnapshotAsync() {
+        SnapshotTasas actual = snapshot.get();
+        if (actual != null) {
+            return CompletableFuture.completedFuture(actual);
+        }
+        synchronized (this) {
+            actual = snapshot.get();
+            if (actual != null) {
+                return CompletableFuture.completedFuture(actual);
+            }
+            if (cargaInicial == null || cargaInicial.isCompletedExceptionally()) {
+                cargaInicial = clienteExchangeRate.obtenerTasasAsync(MONEDA_BASE)
+                        .thenApply(respuesta -> publicarInicial(construirSnapshot(respuesta)));
+            }
+            return cargaInicial.copy();
+        }
+    }
+
+    /**
+     * Descarga una nueva instantánea y la publica reemplazando la anterior de forma atómica.
+     * La instantánea publicada se difunde también como evento de la aplicación
+     * @return Instantánea publicada
+     * @throws IOException Si no es posible obtener las tasas desde la API
+     */
+    public SnapshotTasas actualizar() throws IOException {
+        SnapshotTasas nueva = cargarSnapshot();
+        snapshot.set(nueva);
+        eventPublisher.publishEvent(nueva);
+        log.info("Nueva instantánea de tasas publicada (próxima actualización: {})",
+                nueva.getProximaActualizacionUnix());
+        return nueva;
+    }
+
+    /**
+     * Obtiene la instantánea publicada sin cargarla si no existe
+     * @return Instantánea vigente o null si aún no se ha publicado ninguna
+     */
+    public SnapshotTasas snapshotActual() {
+        return snapshot.get();
+    }
+
+    /**
+     * Indica si la instantánea es la última válida pero no pudo refrescarse a tiempo,
+     * por ejemplo porque el circuito de la API está abierto
+     */
+    public boolean estaObsoleta(SnapshotTasas snapshot) {
+        return snapshot.estaObsoleta(toleranciaObsoletaSegundos);
+    }
+
+    /**
+     * Obtiene la tasa de cambio entre dos monedas a partir de la instantánea vigente
+     * @param monedaOrigen Código de la moneda de origen
+     * @param monedaDestino Código de la moneda de destino
+     * @return Unidades de la moneda destino por cada unidad de la moneda origen
+     * @throws IOException Si no hay tasas disponibles o alguna moneda no está soportada
+     */
+    public double obtenerTasa(String monedaOrigen, String monedaDestino) throws IOException {
+        try {
+            return obtenerSnapshot().tasaCruzada(monedaOrigen, monedaDestino);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Publica la primera instantánea si ninguna otra carga se adelantó
+     */
+    private SnapshotTasas publicarInicial(SnapshotTasas inicial) {
+        if (snapshot.compareAndSet(null, inicial)) {
+            eventPublisher.publishEvent(inicial);
+        }
+        return snapshot.get();
+    }
+
+    /**
+     * Descarga las tasas con base USD y construye una nueva instantánea
+     */
+    private SnapshotTasas cargarSnapshot() throws IOException {
+        log.debug("Cargando instantánea de tasas con base {}", MONEDA_BASE);
+        return construirSnapshot(clienteExchangeRate.obtenerTasas(MONEDA_BASE));
+    }
+
+    /**
+     * Construye una instantánea a partir de la respuesta del endpoint latest
+     */
+    private SnapshotTasas construirSnapshot(RespuestaLatest respuesta) {
+        IndiceMonedas indice = obtenerIndice(respuesta.getCodigos());
+        double[] tasas = new double[indice.tamano()];
+        Arrays.fill(tasas, Double.NaN);
+        for (int i = 0; i < respuesta.tamano(); i++) {
+            tasas[indice.ordinal(respuesta.codigo(i))] = respuesta.tasa(i);
+        }
+
+        long proxima = respuesta.getProximaActualizacionUnix();
+        log.debug("Instantánea cargada con {} tasas (próxima actualización: {})", respuesta.tamano(), proxima);
+        return new SnapshotTasas(MONEDA_BASE, indice, tasas, respuesta.getActualizadoUnix(), proxima);
+    }
+    
+    /**
+     * Reutiliza el índice vigente si cubre todos los códigos recibidos, de modo que los
+     * ordinales se mantengan estables entre instantáneas; en caso contrario construye uno nuevo
+     */
+    private IndiceMonedas obtenerIndice(Collection<String> codigos) {
+        SnapshotTasas actual = snapshot.get();
+        if (actual != null && actual.getIndice().contieneTodos(codigos)) {
+            return actual.getIndice();
+        }
+        IndiceMonedas indice = IndiceMonedas.de(codigos);
+        log.debug("Índice de monedas construido con {} códigos", indice.tamano());
+        return indice;
+    }
+}
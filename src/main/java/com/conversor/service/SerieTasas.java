@@ -0,0 +1,423 @@
+package com.conversor.service;
+
+import com.conversor.model.IndiceMonedas;
+import com.conversor.model.SnapshotTasas;
+import com.conversor.model.VersionDatos;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Serie temporal de instantáneas de tasas en un archivo de solo anexado mapeado en memoria.
+ * Cada registro ocupa 8 bytes de marca de tiempo más un double por moneda, en el orden del
+ * índice guardado en la cabecera (unos 1,3 KB para ~160 monedas). Las lecturas acceden
+ * directamente al archivo mapeado sin copiar los registros.
+ *
+ * <p>Cuando el catálogo trae monedas nuevas el archivo actual se archiva y se inicia otro;
+ * los archivos archivados se siguen leyendo (solo lectura) para no perder el historial.
+ * Los lectores toman una única {@link Vista} inmutable publicada por referencia volátil.
+ *
+ * <pre>
+ * cabecera: magic (int) | versión (int) | monedas (int) | registros (long) | códigos (3 bytes c/u) | relleno
+ * registro: epoch en segundos (long) | tasa por moneda respecto a USD (double, NaN si falta)
+ * </pre>
+ */
+@Slf4j
+@Component
+public class SerieTasas {
+
+    private static final int MAGIC = 0x43535453; // "CSTS"
+    private static final int VERSION = 1;
+    private static final int POSICION_REGISTROS = 12;
+    private static final int POSICION_CODIGOS = 20;
+    private static final int REGISTROS_INICIALES = 1024;
+
+    private final Path archivo;
+    private final CacheGraficos cacheGraficos;
+
+    /** Solo lo usa el escritor, bajo el monitor de la instancia */
+    private FileChannel canal;
+    private volatile Vista vista = Vista.VACIA;
+
+    public SerieTasas(
+            @Value("${tasas.serie.archivo:data/serie_tasas.bin}") String archivo,
+            CacheGraficos cacheGraficos) {
+        this.archivo = Paths.get(archivo);
+        this.cacheGraficos = cacheGraficos;
+    }
+
+    /**
+     * Abre los archivos archivados en solo lectura y el archivo actual, o deja este último
+     * pendiente de crear con la primera instantánea
+     */
+    @PostConstruct
+    public synchronized void abrir() {
+        List<Segmento> archivados = abrirArchivados();
+        vista = new Vista(archivados, null);
+        if (!Files.exists(archivo)) {
+            return;
+        }
+        try {
+            canal = FileChannel.open(archivo, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segmento actual = leerSegmento(canal, FileChannel.MapMode.READ_WRITE);
+            vista = new Vista(archivados, actual);
+            log.info("Serie de tasas abierta con {} instantáneas de {} monedas ({} archivos archivados)",
+                    actual.registros, actual.indice.tamano(), archivados.size());
+        } catch (Exception e) {
+            log.error("No se pudo abrir la serie de tasas {}: {}. Se iniciará una nueva", archivo, e.getMessage());
+            cerrar();
+            archivar();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void cerrar() {
+        Vista actual = vista;
+        try {
+            if (actual.actual != null) {
+                actual.actual.mapa.force();
+            }
+            if (canal != null) {
+                canal.close();
+            }
+        } catch (IOException e) {
+            log.warn("Error al cerrar la serie de tasas: {}", e.getMessage());
+        }
+        canal = null;
+        vista = new Vista(actual.archivados, null);
+    }
+
+    /**
+     * Anexa cada instantánea publicada, salvo que ya sea la última guardada
+     * @param snapshot Instantánea publicada por el {@link MotorTasas}
+     */
+    @EventListener
+    public synchronized void agregar(SnapshotTasas snapshot) {
+        try {
+            Segmento actual = vista.actual;
+            if (actual == null || !actual.indice.contieneTodos(snapshot.getIndice().getCodigos())) {
+                // Un catálogo con monedas nuevas no cabe en el registro actual: se inicia otro archivo
+                actual = iniciarArchivo(snapshot.getIndice());
+            }
+            if (actual.registros > 0 && actual.epoch(actual.registros - 1) >= snapshot.getActualizadoUnix()) {
+                return;
+            }
+
+            long posicion = actual.posicion(actual.registros);
+            MappedByteBuffer destino = actual.mapa;
+            if (posicion + actual.tamanoRegistro > destino.capacity()) {
+                destino = mapear(Math.max(posicion + actual.tamanoRegistro, (long) destino.capacity() * 2));
+            }
+
+            int base = (int) posicion;
+            destino.putLong(base, snapshot.getActualizadoUnix());
+            IndiceMonedas origen = snapshot.getIndice();
+            for (int i = 0; i < actual.indice.tamano(); i++) {
+                int ordinal = origen.ordinal(actual.indice.codigo(i));
+                double tasa = ordinal < 0 ? Double.NaN : snapshot.tasa(ordinal);
+                destino.putDouble(base + 8 + i * 8, tasa);
+            }
+            destino.putLong(POSICION_REGISTROS, actual.registros + 1);
+            // El registro queda escrito antes de publicar la vista que lo incluye
+            vista = new Vista(vista.archivados, actual.con(destino, actual.registros + 1));
+            cacheGraficos.invalidarSerie();
+        } catch (IOException e) {
+            log.error("No se pudo guardar la instantánea en la serie de tasas: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Obtiene la versión de la serie: la marca de tiempo de la última instantánea anexada
+     */
+    public VersionDatos version() {
+        long epoch = vista.ultimoEpoch();
+        return new VersionDatos("s" + Long.toHexString(epoch), epoch * 1000);
+    }
+
+    /**
+     * Obtiene la tasa de un par en cada instantánea de un rango de tiempo, recorriendo
+     * los archivos archivados y el actual en orden cronológico
+     * @param monedaOrigen Código de la moneda de origen
+     * @param monedaDestino Código de la moneda de destino
+     * @param desdeEpoch Inicio del rango en segundos epoch (inclusivo)
+     * @param hastaEpoch Fin del rango en segundos epoch (inclusivo)
+     * @return Puntos en orden cronológico; vacío si el par no está en la serie
+     */
+    public List<PuntoSerie> obtenerSerie(String monedaOrigen, String monedaDestino, long desdeEpoch, long hastaEpoch) {
+        Vista lectura = vista;
+        List<PuntoSerie> puntos = new ArrayList<>();
+        for (Segmento segmento : lectura.archivados) {
+            segmento.leer(monedaOrigen, monedaDestino, desdeEpoch, hastaEpoch, puntos);
+        }
+        if (lectura.actual != null) {
+            lectura.actual.leer(monedaOrigen, monedaDestino, desdeEpoch, hastaEpoch, puntos);
+        }
+        return puntos;
+    }
+
+    /**
+     * Crea un archivo nuevo para el índice indicado, archivando el anterior si existe.
+     * El segmento anterior pasa a la lista de archivados para seguir siendo legible.
+     */
+    private Segmento iniciarArchivo(IndiceMonedas nuevoIndice) throws IOException {
+        // La vista anterior sigue publicada hasta que la nueva la reemplaza de una vez
+        Segmento anterior = vista.actual;
+        List<Segmento> archivados = new ArrayList<>(vista.archivados);
+        if (anterior != null) {
+            anterior.mapa.force();
+            if (anterior.registros > 0) {
+                archivados.add(anterior);
+            }
+        }
+        if (canal != null) {
+            canal.close();
+            canal = null;
+        }
+        archivar();
+        if (archivo.getParent() != null) {
+            Files.createDirectories(archivo.getParent());
+        }
+        canal = FileChannel.open(archivo, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer cabecera = mapear(Segmento.tamanoCabecera(nuevoIndice)
+                + (long) REGISTROS_INICIALES * Segmento.tamanoRegistro(nuevoIndice));
+        cabecera.putInt(0, MAGIC);
+        cabecera.putInt(4, VERSION);
+        cabecera.putInt(8, nuevoIndice.tamano());
+        cabecera.putLong(POSICION_REGISTROS, 0L);
+        byte[] codigos = String.join("", nuevoIndice.getCodigos()).getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < codigos.length; i++) {
+            cabecera.put(POSICION_CODIGOS + i, codigos[i]);
+        }
+        Segmento nuevo = new Segmento(cabecera, nuevoIndice, 0L);
+        vista = new Vista(Collections.unmodifiableList(archivados), nuevo);
+        log.info("Serie de tasas iniciada en {} con {} monedas", archivo, nuevoIndice.tamano());
+        return nuevo;
+    }
+
+    /**
+     * Renombra el archivo actual para conservarlo cuando no puede seguir usándose
+     */
+    private void archivar() {
+        try {
+            if (Files.exists(archivo)) {
+                Path destino = archivo.resolveSibling(archivo.getFileName() + "." + System.currentTimeMillis());
+                Files.move(archivo, destino, StandardCopyOption.ATOMIC_MOVE);
+                log.info("Serie de tasas anterior archivada en {}", destino);
+            }
+        } catch (IOException e) {
+            log.warn("No se pudo archivar la serie de tasas {}: {}", archivo, e.getMessage());
+        }
+    }
+
+    /**
+     * Mapea en solo lectura los archivos archivados junto al actual, ordenados por su
+     * primera instantánea. Los que no tienen un formato válido se ignoran.
+     */
+    private List<Segmento> abrirArchivados() {
+        Path directorio = archivo.toAbsolutePath().getParent();
+        String prefijo = archivo.getFileName() + ".";
+        List<Segmento> archivados = new ArrayList<>();
+        if (directorio == null || !Files.isDirectory(directorio)) {
+            return archivados;
+        }
+        try (Stream<Path> rutas = Files.list(directorio)) {
+            rutas.filter(ruta -> ruta.getFileName().toString().startsWith(prefijo)).forEach(ruta -> {
+                try (FileChannel lectura = FileChannel.open(ruta, StandardOpenOption.READ)) {
+                    Segmento segmento = leerSegmento(lectura, FileChannel.MapMode.READ_ONLY);
+                    if (segmento.registros > 0) {
+                        archivados.add(segmento);
+                    }
+                } catch (IOException e) {
+                    log.warn("Se ignora el archivo de serie archivado {}: {}", ruta, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("No se pudieron listar las series archivadas en {}: {}", directorio, e.getMessage());
+        }
+        archivados.sort(Comparator.comparingLong(segmento -> segmento.epoch(0)));
+        return Collections.unmodifiableList(archivados);
+    }
+
+    /**
+     * Lee la cabecera de un archivo de serie y lo mapea completo en el modo indicado
+     */
+    private static Segmento leerSegmento(FileChannel lectura, FileChannel.MapMode modo) throws IOException {
+        ByteBuffer cabecera = ByteBuffer.allocate(POSICION_CODIGOS);
+        lectura.read(cabecera, 0);
+        cabecera.flip();
+        if (cabecera.remaining() < POSICION_CODIGOS || cabecera.getInt() != MAGIC || cabecera.getInt() != VERSION) {
+            throw new IOException("Formato de archivo de serie no reconocido");
+        }
+        int monedas = cabecera.getInt();
+        long guardados = cabecera.getLong();
+
+        ByteBuffer codigos = ByteBuffer.allocate(monedas * 3);
+        lectura.read(codigos, POSICION_CODIGOS);
+        String texto = new String(codigos.array(), StandardCharsets.US_ASCII);
+        List<String> lista = new ArrayList<>(monedas);
+        for (int i = 0; i < monedas; i++) {
+            lista.add(texto.substring(i * 3, i * 3 + 3));
+        }
+
+        IndiceMonedas indice = IndiceMonedas.de(lista);
+        long necesario = Segmento.tamanoCabecera(indice) + guardados * Segmento.tamanoRegistro(indice);
+        if (modo == FileChannel.MapMode.READ_ONLY && lectura.size() < necesario) {
+            throw new IOException("Archivo de serie truncado");
+        }
+        long tamano = modo == FileChannel.MapMode.READ_ONLY ? necesario : Math.max(lectura.size(), necesario);
+        if (tamano > Integer.MAX_VALUE) {
+            throw new IOException("La serie de tasas superó el tamaño máximo mapeable");
+        }
+        return new Segmento(lectura.map(modo, 0, tamano), indice, guardados);
+    }
+
+    private MappedByteBuffer mapear(long tamano) throws IOException {
+        if (tamano > Integer.MAX_VALUE) {
+            throw new IOException("La serie de tasas superó el tamaño máximo mapeable");
+        }
+        return canal.map(FileChannel.MapMode.READ_WRITE, 0, tamano);
+    }
+
+    /**
+     * Estado visible para los lectores: segmentos archivados y segmento actual
+     */
+    private static final class Vista {
+        static final Vista VACIA = new Vista(Collections.emptyList(), null);
+
+        final List<Segmento> archivados;
+        final Segmento actual;
+
+        Vista(List<Segmento> archivados, Segmento actual) {
+            this.archivados = archivados;
+            this.actual = actual;
+        }
+
+        long ultimoEpoch() {
+            if (actual != null && actual.registros > 0) {
+                return actual.epoch(actual.registros - 1);
+            }
+            if (!archivados.isEmpty()) {
+                Segmento ultimo = archivados.get(archivados.size() - 1);
+                return ultimo.epoch(ultimo.registros - 1);
+            }
+            return 0L;
+        }
+    }
+
+    /**
+     * Archivo mapeado con su índice, disposición y número de registros visibles
+     */
+    private static final class Segmento {
+        final MappedByteBuffer mapa;
+        final IndiceMonedas indice;
+        final int tamanoCabecera;
+        final int tamanoRegistro;
+        final long registros;
+
+        Segmento(MappedByteBuffer mapa, IndiceMonedas indice, long registros) {
+            this.mapa = mapa;
+            this.indice = indice;
+            this.tamanoCabecera = tamanoCabecera(indice);
+            this.tamanoRegistro = tamanoRegistro(indice);
+            this.registros = registros;
+        }
+
+        Segmento con(MappedByteBuffer nuevoMapa, long nuevosRegistros) {
+            return new Segmento(nuevoMapa, indice, nuevosRegistros);
+        }
+
+        /** La cabecera se alinea a 8 bytes para que cada double quede alineado */
+        static int tamanoCabecera(IndiceMonedas indice) {
+            return (POSICION_CODIGOS + indice.tamano() * 3 + 7) & ~7;
+        }
+
+        static int tamanoRegistro(IndiceMonedas indice) {
+            return 8 + indice.tamano() * 8;
+        }
+
+        long posicion(long registro) {
+            return tamanoCabecera + registro * tamanoRegistro;
+        }
+
+        long epoch(long registro) {
+            return mapa.getLong((int) posicion(registro));
+        }
+
+        void leer(String monedaOrigen, String monedaDestino, long desdeEpoch, long hastaEpoch, List<PuntoSerie> puntos) {
+            int origen = indice.ordinal(monedaOrigen);
+            int destino = indice.ordinal(monedaDestino);
+            if (registros == 0 || origen < 0 || destino < 0) {
+                return;
+            }
+            for (long i = buscarPrimero(desdeEpoch); i < registros; i++) {
+                int base = (int) posicion(i);
+                long epoch = mapa.getLong(base);
+                if (epoch > hastaEpoch) {
+                    break;
+                }
+                double tasa = mapa.getDouble(base + 8 + destino * 8) / mapa.getDouble(base + 8 + origen * 8);
+                if (!Double.isNaN(tasa) && !Double.isInfinite(tasa)) {
+                    puntos.add(new PuntoSerie(epoch, tasa));
+                }
+            }
+        }
+
+        /**
+         * Búsqueda binaria del primer registro con marca de tiempo mayor o igual a la indicada
+         */
+        private long buscarPrimero(long desdeEpoch) {
+            long bajo = 0;
+            long alto = registros;
+            while (bajo < alto) {
+                long medio = (bajo + alto) >>> 1;
+                if (epoch(medio) < desdeEpoch) {
+                    bajo = medio + 1;
+                } else {
+                    alto = medio;
+                }
+            }
+            return bajo;
+        }
+    }
+
+    /**
+     * Tasa de un par en un instante de la serie
+     */
+    public static final class PuntoSerie {
+        private final long epoch;
+        private final double tasa;
+
+        PuntoSerie(long epoch, double tasa) {
+            this.epoch = epoch;
+            this.tasa = tasa;
+        }
+
+        public long getEpoch() {
+            return epoch;
+        }
+
+        public double getTasa() {
+            return tasa;
+        }
+    }
+}